@@ -0,0 +1,179 @@
+package given;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Screens a library of strands for pairs which anneal, without trying zipUp on every
+ * pair. A pair can only zip up over minOverlap bases or more if some seedLength bases of
+ * one strand are the reverse complement of seedLength bases of the other, so the seeds of
+ * the reverse complement of every strand are indexed first, and the exact zipUp offset is
+ * only looked for in pairs which share a seed.
+ *
+ * Pairs are checked in parallel on a ForkJoinPool, each task taking a run of the library
+ * (as in PCR); a strand is screened against itself as well, for self-dimers.
+ */
+public final class AnnealingScreen {
+
+	// Below this many strands a task screens them itself instead of splitting.
+	private static final int LEAF_SIZE = 64;
+	// Seeds are indexed as 2-bit codes in the high half of a long.
+	static final int MAX_SEED_LENGTH = 16;
+
+	private final int seedLength;
+	private final int minOverlap;
+	private final ForkJoinPool pool;
+
+	/*
+	 * Finds the pairs which zip up over at least seedLength bases, on the common pool.
+	 */
+	public AnnealingScreen(int seedLength) {
+		this(seedLength, seedLength, ForkJoinPool.commonPool());
+	}
+
+	public AnnealingScreen(int seedLength, int minOverlap, ForkJoinPool pool) {
+		if(seedLength < 1 || seedLength > MAX_SEED_LENGTH) throw new IllegalArgumentException("seed length must be in [1, " + MAX_SEED_LENGTH + "]");
+		if(minOverlap < seedLength) throw new IllegalArgumentException("minimum overlap shorter than the seeds");
+		if(pool == null) throw new NullPointerException();
+		this.seedLength = seedLength;
+		this.minOverlap = minOverlap;
+		this.pool = pool;
+	}
+
+	/*
+	 * How two strands of the library zip up: the pairing offset zipUp picks for
+	 * new PackedMolecule(strandA, strandB), and the length of the paired region.
+	 */
+	public static final class Annealing {
+		// positions in the library, first <= second
+		public final int first;
+		public final int second;
+		public final PackedStrand strandA;
+		public final PackedStrand strandB;
+		public final int offset;
+		public final int overlap;
+
+		Annealing(int first, int second, PackedStrand strandA, PackedStrand strandB, int offset, int overlap) {
+			this.first = first;
+			this.second = second;
+			this.strandA = strandA;
+			this.strandB = strandB;
+			this.offset = offset;
+			this.overlap = overlap;
+		}
+
+		/*
+		 * The molecule the two strands make, without zipping them up again.
+		 */
+		public PackedMolecule molecule() {
+			return new PackedMolecule(strandA, strandB, offset);
+		}
+
+		public String toString() {
+			return first + " + " + second + ": offset " + offset + ", " + overlap + " pairs";
+		}
+	}
+
+	/*
+	 * Every pair of strands of the library (DNAStrands can be packed with pack()) which
+	 * zips up over at least minOverlap bases, ordered by first then second. Returns exactly
+	 * the pairs for which new DNAMolecule(strandA, strandB) would pair that many bases.
+	 */
+	public List<Annealing> screen(List<PackedStrand> library) {
+		PackedStrand[] strands = library.toArray(new PackedStrand[0]);
+		long[] seeds = seedIndex(strands);
+		return pool.invoke(new Screen(strands, seeds, 0, strands.length));
+	}
+
+	/*
+	 * Every seed of the reverse complement of every strand, as the seed in the high half
+	 * and the position of the strand in the low half, sorted and without repeats.
+	 */
+	private long[] seedIndex(PackedStrand[] strands) {
+		long total = 0;
+		for(PackedStrand strand : strands) total += Math.max(0, strand.length - seedLength + 1);
+		if(total > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("library too large to index");
+		long[] seeds = new long[(int) total];
+		int k = 0;
+		for(int j = 0; j < strands.length; j++) {
+			PackedStrand strand = strands[j];
+			long seed = 0;
+			// the reverse complement, read three to five, is the complement of strand read backwards
+			for(int i = strand.length - 1, n = 0; i >= 0; i--, n++) {
+				seed = (seed << 2 | (strand.code(i) ^ 3)) & mask();
+				if(n >= seedLength - 1) seeds[k++] = seed << 32 | j;
+			}
+		}
+		Arrays.sort(seeds);
+		int unique = 0;
+		for(int i = 0; i < seeds.length; i++) {
+			if(unique == 0 || seeds[i] != seeds[unique - 1]) seeds[unique++] = seeds[i];
+		}
+		return Arrays.copyOf(seeds, unique);
+	}
+
+	private long mask() {
+		return (1L << (2 * seedLength)) - 1;
+	}
+
+	private final class Screen extends RecursiveTask<List<Annealing>> {
+		private static final long serialVersionUID = 1L;
+
+		private final PackedStrand[] strands;
+		private final long[] seeds;
+		private final int from, to;
+
+		Screen(PackedStrand[] strands, long[] seeds, int from, int to) {
+			this.strands = strands;
+			this.seeds = seeds;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected List<Annealing> compute() {
+			if(to - from <= LEAF_SIZE) {
+				List<Annealing> found = new ArrayList<Annealing>();
+				for(int i = from; i < to; i++) screenStrand(i, found);
+				return found;
+			}
+			int middle = (from + to) >>> 1;
+			Screen right = new Screen(strands, seeds, middle, to);
+			right.fork();
+			List<Annealing> found = new Screen(strands, seeds, from, middle).compute();
+			found.addAll(right.join());
+			return found;
+		}
+
+		/*
+		 * Checks strand i against the strands from i on which share a seed with it.
+		 */
+		private void screenStrand(int i, List<Annealing> found) {
+			PackedStrand strandA = strands[i];
+			int[] candidates = new int[16];
+			int n = 0;
+			long seed = 0;
+			for(int p = 0; p < strandA.length; p++) {
+				seed = (seed << 2 | strandA.code(p)) & mask();
+				if(p < seedLength - 1) continue;
+				int at = Arrays.binarySearch(seeds, seed << 32 | i);
+				for(at = at < 0 ? -at - 1 : at; at < seeds.length && seeds[at] >>> 32 == seed; at++) {
+					if(n == candidates.length) candidates = Arrays.copyOf(candidates, 2 * n);
+					candidates[n++] = (int) seeds[at];
+				}
+			}
+			Arrays.sort(candidates, 0, n);
+			for(int c = 0; c < n; c++) {
+				int j = candidates[c];
+				if(c > 0 && j == candidates[c - 1]) continue;
+				PackedStrand strandB = strands[j];
+				int offset = DNAMolecule.findZipOffset(strandA, strandB.reverse());
+				if(offset == DNAMolecule.NO_OFFSET) continue;
+				int overlap = Math.min(strandA.length, strandB.length + offset) - Math.max(0, offset);
+				if(overlap >= minOverlap) found.add(new Annealing(i, j, strandA, strandB, offset, overlap));
+			}
+		}
+	}
+}
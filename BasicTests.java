@@ -2,6 +2,18 @@ package test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
 import mycode.*;
@@ -47,4 +59,322 @@ public class BasicTests {
 		assertTrue(valid);
 	}
 	
+	@Test
+	public void testPackedMatchesLinked(){
+		DNAMolecule d = new DNAMolecule(new DNAStrand("ACGTACGT"), new DNAStrand("ACGTACGTTTTT"));
+		PackedMolecule p = new PackedMolecule(new PackedStrand("ACGTACGT"), new PackedStrand("ACGTACGTTTTT"));
+		assertEquals(d.toString(), p.toString());
+		assertEquals(new DNAMolecule("ACGTACGT").toString(), new PackedMolecule("ACGTACGT").toString());
+		assertEquals(d.toString(), d.pack().unpack().toString());
+	}
+	
+	@Test
+	public void testLongStrandLength(){
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < 100000; i++) sb.append("ACGT".charAt(i % 4));
+		DNAStrand strand = new DNAStrand(sb.toString());
+		assertEquals(100000, strand.length());
+		assertEquals(sb.toString(), strand.toStringPlain());
+	}
+	
+	@Test
+	public void testRestrictionDigest(){
+		DNAMolecule d = new DNAMolecule("CCGAATTCAAGGATCCGG");
+		List<DNAMolecule> fragments = d.restrictionDigest(Arrays.asList("GAATTC", "GGATCC"));
+		assertEquals(3, fragments.size());
+		assertEquals("(3) C=C=G=A=A=T=T=C (5)\n"+
+		             "    | |\n"+
+		             "(5) G=G (3)", fragments.get(0).toString());
+		assertEquals("            (3) G=G (5)\n"+
+		             "                | |\n"+
+		             "(5) C=C=T=A=G=G=C=C (3)", fragments.get(2).toString());
+	}
+	
+	@Test
+	public void testCompleteDigestStream(){
+		DNAMolecule d = new DNAMolecule("TTGATCAAAGATCTTTGATCAA");
+		assertEquals(4, d.completeDigest("GATC").count());
+	}
+	
+	@Test
+	public void testSerializationRoundTrip() throws IOException{
+		DNAMolecule d = new DNAMolecule(new DNAStrand("ACGTACGT"), new DNAStrand("ACGTACGTTTTT"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MoleculeIO.write(d, out);
+		DNAMolecule copy = MoleculeIO.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(d.toString(), copy.toString());
+	}
+	
+	@Test
+	public void testDuplicateIsIndependent(){
+		DNAMolecule d = new DNAMolecule(new DNAStrand("ACGTACGT"), new DNAStrand("ACGTACGTTTTT"));
+		String drawing = d.toString();
+		DNAMolecule copy = d.duplicate().duplicate();
+		assertEquals(drawing, copy.toString());
+		assertNotNull(copy.restrictionCut("GTAC"));
+		assertEquals(drawing, d.toString());
+	}
+	
+	@Test
+	public void testPCR(){
+		DNAMolecule d = new DNAMolecule("ACGTTGCAAC");
+		PCR.Result result = new PCR(5).run(Arrays.asList(d));
+		assertEquals(32, result.molecules().size());
+		assertEquals(5, result.cycles().size());
+		assertEquals(16, result.cycles().get(4).copies);
+		for(DNAMolecule m : result.molecules()) assertEquals(d.toString(), m.toString());
+		assertEquals(new PCR(8, 0.5, 42).run(Arrays.asList(d)).molecules().size(),
+				new PCR(8, 0.5, 42).run(Arrays.asList(d)).molecules().size());
+	}
+	
+	@Test
+	public void testCombineStickyEnds(){
+		DNAMolecule d = new DNAMolecule("AAAGAATTCAAA");
+		String drawing = d.toString();
+		DNAMolecule right = d.restrictionCut("GAATTC");
+		assertEquals(drawing, d.tryToCombineWith(right).toString());
+	}
+	
+	@Test
+	public void testLigationIndex(){
+		DNAMolecule d = new DNAMolecule("TTTGAATTCAAAGGATCCCCCAAGCTTGGG");
+		String drawing = d.toString();
+		List<DNAMolecule> fragments = d.restrictionDigest(Arrays.asList("GGATCC", "GAATTC", "AAGCTT"));
+		Collections.reverse(fragments);
+		fragments.get(1).flip();
+		LigationIndex index = new LigationIndex(false);
+		index.addAll(fragments);
+		assertEquals(2, index.partners(fragments.get(1)).size());
+		List<DNAMolecule> ligated = index.ligateAll();
+		assertEquals(1, ligated.size());
+		DNAMolecule whole = ligated.get(0);
+		if(!whole.toString().equals(drawing)) whole.flip();
+		assertEquals(drawing, whole.toString());
+	}
+	
+	@Test
+	public void testRender() throws IOException{
+		DNAMolecule d = new DNAMolecule(new DNAStrand("ACGTACGT"), new DNAStrand("ACGTACGTTTTT"));
+		StringWriter out = new StringWriter();
+		d.render(out);
+		assertEquals(d.toString(), out.toString());
+		assertEquals(d.toString(), d.pack().toString());
+	}
+	
+	@Test
+	public void testStrandArena(){
+		StrandArena arena = new StrandArena();
+		DNAMolecule d = arena.molecule("TTGATCAAAGATCTTTGATCAA");
+		assertEquals(new DNAMolecule("TTGATCAAAGATCTTTGATCAA").toString(), d.toString());
+		assertEquals(4, d.completeDigest("GATC").count());
+		arena.release();
+		assertEquals(0, arena.capacity());
+	}
+	
+	@Test
+	public void testStrandArenaReset(){
+		StrandArena arena = new StrandArena();
+		DNAMolecule d = arena.molecule("TTGATCAAAG");
+		DNAMolecule copy = d.duplicate();
+		PackedMolecule packed = arena.molecule("ACCGTT").pack();
+		PackedMolecule packedCopy = arena.packedMolecule("GGATCC").duplicate();
+		String expected = new DNAMolecule("TTGATCAAAG").toString();
+		arena.reset();
+		// the freed words are handed out again
+		arena.molecule("CCCCCCCCCCCCCCCCCCCCCCCCCCCCCC");
+		assertEquals(expected, copy.toString());
+		assertEquals(new PackedMolecule("ACCGTT").toString(), packed.toString());
+		assertEquals(new PackedMolecule("GGATCC").toString(), packedCopy.toString());
+	}
+	
+	@Test
+	public void testRopeStrand(){
+		RopeStrand rope = new RopeStrand("AAAACCCC").concat(new RopeStrand("GGGGTTTT"));
+		RopeStrand[] parts = rope.split(6);
+		assertEquals("AAAACC", parts[0].toString());
+		assertEquals("CCGGGGTTTT", parts[1].toString());
+		RopeStrand edited = parts[1].concat(parts[0]);
+		assertEquals('C', edited.baseAt(0));
+		assertEquals('A', edited.baseAt(10));
+		assertEquals(16, edited.length());
+		assertEquals('G', new DNAStrand("ACGT").baseAt(2));
+		// strands keep their ropes up to date through cuts and ligations
+		DNAMolecule molecule = new DNAMolecule("CCGAATTCAAG");
+		assertEquals('A', molecule.strandA.baseAt(9));
+		DNAMolecule right = molecule.restrictionCut("GAATTC");
+		assertEquals('G', molecule.strandA.baseAt(2));
+		assertEquals('A', right.strandA.baseAt(1));
+		assertEquals('T', right.strandB.baseAt(1));
+		DNAMolecule combined = molecule.tryToCombineWith(right);
+		assertEquals('A', combined.strandA.baseAt(8));
+		assertEquals('G', combined.strandA.baseAt(10));
+	}
+	
+	@Test
+	public void testFMIndex(){
+		PackedMolecule indexed = new PackedMolecule("TTGATCAAAGATCTTTGATCAA");
+		PackedMolecule scanned = new PackedMolecule("TTGATCAAAGATCTTTGATCAA");
+		FMIndex index = indexed.buildIndex();
+		assertEquals(6, index.count("GATC"));
+		assertArrayEquals(new int[] { 2, 9, 16 }, index.locateOnA("GATC"));
+		assertEquals(0, index.count("GGG"));
+		assertEquals(String.valueOf(scanned.restrictionCut("GATC")), String.valueOf(indexed.restrictionCut("GATC")));
+		assertEquals(scanned.toString(), indexed.toString());
+	}
+	
+	@Test
+	public void testZipUpWithMismatches(){
+		PackedMolecule m = PackedMolecule.anneal(new PackedStrand("AAAAAAAAAA"), new PackedStrand("TTTTGTTTTT"), 1);
+		assertArrayEquals(new int[] { 5 }, m.mismatches());
+		assertEquals("(3) A=A=A=A=A=A=A=A=A=A (5)\n    | | | | |   | | | |\n(5) T=T=T=T=T=G=T=T=T=T (3)", m.toString());
+		PackedMolecule exact = new PackedMolecule(new PackedStrand("AAAAAAAAAA"), new PackedStrand("TTTTGTTTTT"));
+		assertTrue(m.zipUp(0));
+		assertEquals(exact.toString(), m.toString());
+		assertFalse(m.hasMismatches());
+	}
+	
+	@Test
+	public void testAnnealingScreen(){
+		List<PackedStrand> library = Arrays.asList(new PackedStrand("ACGTTGCAAC"), new PackedStrand("AAAAAAAAAA"),
+				new PackedStrand("GTTGCAACGT"), new PackedStrand("CCCCCCCCCC"));
+		List<AnnealingScreen.Annealing> found = new AnnealingScreen(6).screen(library);
+		// strands 0 and 2 also make self-dimers, over 8 bases
+		assertEquals(3, found.size());
+		AnnealingScreen.Annealing pair = found.get(1);
+		assertEquals(0, pair.first);
+		assertEquals(2, pair.second);
+		assertEquals(10, pair.overlap);
+		assertEquals(new DNAMolecule(new DNAStrand("ACGTTGCAAC"), new DNAStrand("GTTGCAACGT")).toString(), pair.molecule().toString());
+	}
+	
+	@Test
+	public void testOperationStats(){
+		OperationStats.reset();
+		OperationStats.enable();
+		try {
+			DNAMolecule d = new DNAMolecule(new DNAStrand("ACGTTGCAAC"), new DNAStrand("GTTGCAACGT"));
+			d.duplicate();
+			assertEquals(1, OperationStats.snapshot(OperationStats.Operation.ZIP_UP).count);
+			assertEquals(1, OperationStats.snapshot(OperationStats.Operation.DUPLICATE).count);
+			// both strands are packed for the copy, and nothing else is built
+			assertEquals(20, OperationStats.snapshot(OperationStats.Operation.DUPLICATE).work);
+			d.duplicate();
+			assertEquals(20, OperationStats.snapshot(OperationStats.Operation.DUPLICATE).work);
+			// the site starts at the third of the paired positions, on either strand
+			new DNAMolecule("CCGAATTCAAG").restrictionCut("GAATTC");
+			assertEquals(6, OperationStats.snapshot(OperationStats.Operation.RESTRICTION_CUT).work);
+		} finally {
+			OperationStats.disable();
+		}
+		new DNAMolecule("ACGT").duplicate();
+		assertEquals(2, OperationStats.snapshot(OperationStats.Operation.DUPLICATE).count);
+	}
+	
+	@Test
+	public void testSequenceConstructorIsLazy(){
+		DNAMolecule d = new DNAMolecule("TTGATCAAAGATCTT");
+		DNAMolecule zipped = new DNAMolecule(new DNAStrand("TTGATCAAAGATCTT"), new DNAStrand("AAGATCTTTGATCAA"));
+		assertEquals(zipped.toString(), d.toString());
+		assertEquals('A', d.strandB.baseAt(0));
+		assertEquals(String.valueOf(zipped.restrictionCut("GATC")), String.valueOf(d.restrictionCut("GATC")));
+		assertEquals(zipped.toString(), d.toString());
+	}
+	
+	@Test
+	public void testOffHeapMolecule(){
+		PackedMolecule packed = new PackedMolecule("TTGATCAAAGATCTTTGATCAA");
+		try(OffHeapMolecule offHeap = new OffHeapMolecule(packed)) {
+			assertEquals(packed.toString(), offHeap.toString());
+			try(OffHeapMolecule right = offHeap.restrictionCut("GATC")) {
+				assertEquals(String.valueOf(packed.restrictionCut("GATC")), String.valueOf(right));
+			}
+			assertEquals(packed.toString(), offHeap.toString());
+			assertTrue(offHeap.zipUp());
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testClosedOffHeapMolecule(){
+		OffHeapMolecule offHeap = new OffHeapMolecule("ACGT");
+		offHeap.close();
+		offHeap.lengthA();
+	}
+	
+	@Test
+	public void testPackedReverseComplement(){
+		String sequence = "ACGTTGCAACGGATCCTTAAGGCCTTGACCATGGTACCGAATTCGGTACCAAGCTTGCATGCCTGCAG";
+		PackedStrand view = new PackedStrand(sequence).subSequence(3, 68);
+		assertEquals(DNAStrand.getComplementStrand(sequence.substring(3, 68)), view.reverseComplement().toString());
+		assertArrayEquals("CGT".getBytes(), DNAStrand.getComplementStrand("ACG".getBytes()));
+	}
+	
+	@Test
+	public void testFMIndexWholeBlocks(){
+		// 30 + 32 bases and the two marks fill exactly one block of occurrence counts
+		PackedStrand a = new PackedStrand("CGTAGCGAGCACTCACGAACAATTAGTGCC");
+		PackedStrand b = new PackedStrand("AGGGCACTAATTGTTCGTGAGTGCTCGCTACG");
+		FMIndex index = new FMIndex(a, b);
+		assertEquals(15, index.count("A"));
+		assertArrayEquals(new int[] { 0, 19 }, index.locateOnB("AG"));
+	}
+	
+	@Test
+	public void testSequenceLoaderSplitsAtN() throws IOException {
+		Path file = Files.createTempFile("chr", ".fa");
+		try {
+			Files.write(file, ">chr1 with a gap\nNNACGTNN\nNNNggcaN\n>chr2\nTTAC\n>chrUn\nNNNN\n".getBytes(StandardCharsets.US_ASCII));
+			Map<String, PackedStrand> records = SequenceLoader.readFasta(file);
+			assertEquals(Arrays.asList("chr1:2-6", "chr1:11-15", "chr2"), Arrays.asList(records.keySet().toArray()));
+			assertEquals("ACGT", records.get("chr1:2-6").toString());
+			assertEquals("GGCA", records.get("chr1:11-15").toString());
+			assertEquals("TTAC", records.get("chr2").toString());
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testStrandOfSequenceMolecule(){
+		DNAMolecule molecule = new DNAMolecule(new DNAMolecule("ACGTAC").strandB, new DNAStrand("ACGTAC"));
+		assertEquals(new DNAMolecule(new DNAStrand("GTACGT"), new DNAStrand("ACGTAC")).toString(), molecule.toString());
+	}
+	
+	@Test
+	public void testStrandOfDuplicate(){
+		DNAMolecule template = new DNAMolecule(new DNAStrand("ACGTAC"), new DNAStrand("GTACGT"));
+		DNAMolecule molecule = new DNAMolecule(template.duplicate().strandA, new DNAStrand("GTACGT"));
+		assertEquals(template.toString(), molecule.toString());
+		assertEquals('G', template.duplicate().strandB.baseAt(4));
+	}
+	
+	@Test
+	public void testZipUpOfRepetitiveStrands(){
+		// overlaps of these strands pair up for long stretches at many offsets, so trying
+		// each offset in turn runs out of budget and the offsets are scored by an FFT;
+		// anneal, which scans the bit-planes of the strands, must agree with it
+		String[][] pairs = {
+			// several offsets pair the whole of strand B: the first of them is picked
+			{ repeat("AT", 1000), repeat("AT", 600) },
+			{ repeat("AAT", 700), repeat("ATT", 500) + "C" },
+			{ repeat("A", 2000), repeat("T", 1999) + "A" },
+		};
+		for(String[] pair : pairs) {
+			DNAMolecule zipped = new DNAMolecule(new DNAStrand(pair[0]), new DNAStrand(pair[1]));
+			PackedMolecule annealed = PackedMolecule.anneal(new PackedStrand(pair[0]), new PackedStrand(pair[1]), 0);
+			assertEquals(annealed.toString(), zipped.toString());
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testZipUpOfRepetitiveStrandsFails(){
+		// every overlap pairs up until its last pair, which does not
+		new DNAMolecule(new DNAStrand(repeat("A", 2000) + "C"), new DNAStrand("C" + repeat("T", 2000)));
+	}
+	
+	private static String repeat(String s, int times){
+		StringBuilder sb = new StringBuilder(s.length() * times);
+		for(int i = 0; i < times; i++) sb.append(s);
+		return sb.toString();
+	}
+	
 }
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import mycode.ConcurrentDeque;
 import mycode.Deque;
 
 import org.junit.Test;
@@ -229,6 +230,125 @@ public class BasicTestsDequeue {
 		}
 	}
 	
+	@Test
+	public void testWrapAroundAndResize(){
+		List<Integer> list = new ArrayList<Integer>();
+		Deque<Integer> d = new Deque<Integer>();
+		for (int round = 0; round < 3; round++){
+			for (int i = 0; i < 5000; i++){
+				if (i % 3 == 0){
+					list.add(0, i);
+					d.addFront(i);
+				} else {
+					list.add(i);
+					d.addRear(i);
+				}
+			}
+			assertEquals(list.size(), d.size());
+			int index = 0;
+			for (Integer i : d){
+				assertEquals(list.get(index++), i);
+			}
+			while (list.size() > 7){
+				assertEquals(list.remove(0), d.removeFront());
+				assertEquals(list.remove(list.size() - 1), d.removeRear());
+			}
+			assertEquals(list.size(), d.size());
+		}
+	}
+	
+	@Test
+	public void testConcurrentDequeStealing() throws InterruptedException{
+		final ConcurrentDeque<Integer> d = new ConcurrentDeque<Integer>();
+		final int n = 100000;
+		final boolean[] seen = new boolean[n];
+		for (int i = 0; i < n; i++){
+			if (i % 2 == 0){
+				d.addFront(i);
+			} else {
+				d.addRear(i);
+			}
+		}
+		final List<Integer> stolen = new ArrayList<Integer>();
+		Thread thief = new Thread(new Runnable(){
+			public void run(){
+				Integer item;
+				while ((item = d.pollFront()) != null){
+					stolen.add(item);
+				}
+			}
+		});
+		thief.start();
+		Integer item;
+		int taken = 0;
+		while ((item = d.pollRear()) != null){
+			seen[item] = true;
+			taken++;
+		}
+		thief.join();
+		for (Integer i : stolen){
+			assertEquals(false, seen[i]);
+			seen[i] = true;
+		}
+		assertEquals(n, taken + stolen.size());
+		assertEquals(0, d.size());
+	}
+	
+	@Test
+	public void testBulkOperations(){
+		Deque<Integer> d = new Deque<Integer>();
+		List<Integer> list = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++){
+			list.add(i);
+		}
+		d.addAllRear(list);
+		d.addAllFront(list);
+		assertEquals(200, d.size());
+		assertEquals(list, d.removeFront(100));
+		final List<Integer> drained = new ArrayList<Integer>();
+		assertEquals(100, d.drainTo(new java.util.function.Consumer<Integer>(){
+			public void accept(Integer i){
+				drained.add(i);
+			}
+		}, 1000));
+		assertEquals(list, drained);
+		assertEquals(0, d.size());
+	}
+	
+	@Test
+	public void testDrainToConsumerThrows(){
+		Deque<Integer> d = new Deque<Integer>();
+		for (int i = 0; i < 10; i++){
+			d.addRear(i);
+		}
+		try {
+			d.drainTo(new java.util.function.Consumer<Integer>(){
+				public void accept(Integer i){
+					if (i == 3)
+						throw new IllegalStateException();
+				}
+			}, 10);
+		} catch (IllegalStateException e){
+			// the items up to and including 3 were deleted
+		}
+		assertEquals(6, d.size());
+		assertEquals(Integer.valueOf(4), d.removeFront());
+		assertEquals(Integer.valueOf(9), d.removeRear());
+		assertEquals(4, d.size());
+	}
+	
+	@Test
+	public void testParallelStream(){
+		Deque<Integer> d = new Deque<Integer>();
+		long expected = 0;
+		for (int i = 0; i < 10000; i++){
+			d.addRear(i);
+			expected += i;
+		}
+		assertEquals(10000, d.spliterator().estimateSize());
+		assertEquals(expected, java.util.stream.StreamSupport.stream(d.spliterator(), true).mapToLong(i -> i).sum());
+	}
+	
 	private static void testDequeIterator(List<Object> expected, Deque<Object> deque){
 		int index = 0;
 		for (Object o : deque){
@@ -0,0 +1,242 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+
+/*
+ * A work-stealing deque (after Chase and Lev) with the surface of Deque.
+ *
+ * One thread owns the deque: only it may call addRear, removeRear, pollRear and addFront.
+ * Its work at the rear is lock-free and, except when racing for the very last item, does
+ * not even need a compare-and-set. Any thread may take items from the front (removeFront,
+ * pollFront), competing through a compare-and-set on the front index.
+ *
+ * The front index is kept together with a stamp, bumped on every change, in a single long,
+ * so that a thief which read the front before the owner moved it backwards (addFront) and
+ * forwards again cannot take the wrong item.
+ *
+ * The array grows as needed but never shrinks, and size and the iterator only give a
+ * snapshot which may be stale by the time it is used. Slots are cleared once their items
+ * are taken, so that the deque does not keep them reachable: by the owner when it takes
+ * them, and when a thief takes them, by the owner on its next operation (see sweep).
+ */
+public class ConcurrentDeque<Item> implements Iterable<Item> {
+	private static final int INITIAL_CAPACITY = 64; // a power of two
+	private static final VarHandle TOP;
+
+	static {
+		try {
+			TOP = MethodHandles.lookup().findVarHandle(ConcurrentDeque.class, "top", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// stamp in the high half, index of the first item in the low half
+	private volatile long top;
+	// index just past the last item; only written by the owner
+	private volatile int bottom;
+	// circular buffer, its length always a power of two; only replaced by the owner
+	private volatile Object[] items;
+	// slots before this index have been cleared since their items were taken; owner only
+	private int swept;
+
+	// constructor
+	public ConcurrentDeque() {
+		items = new Object[INITIAL_CAPACITY];
+	}
+
+	private static int index(long top) {
+		return (int) top;
+	}
+
+	// the front index moved to a new position, with a new stamp
+	private static long moved(long top, int index) {
+		return ((top >>> 32) + 1) << 32 | (index & 0xffffffffL);
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentDeque [N=" + size() + "]";
+	}
+
+	// if deque empty (at the moment)
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	// return the number of items on the deque (at the moment)
+	public int size() {
+		int size = bottom - index(top);
+		return size < 0 ? 0 : size;
+	}
+
+	// copies items [t, b) into an array twice as large, at the same indices
+	private Object[] grow(Object[] a, int t, int b) {
+		if (a.length == 1 << 30)
+			throw new IllegalStateException("Deque overflow");
+		Object[] newItems = new Object[a.length << 1];
+		for (int i = t; i != b; i++)
+			newItems[i & (newItems.length - 1)] = a[i & (a.length - 1)];
+		items = newItems;
+		swept = t;
+		return newItems;
+	}
+
+	/*
+	 * Clears the slots of the items thieves have taken since the last sweep, which are
+	 * those from swept up to the front index t (owner only). A thief cannot clear its slot
+	 * itself: by the time it could, the owner may have put a new item there (with addFront,
+	 * or addRear once the indices wrap around), and the item may even be the same object.
+	 * The owner is the only writer of the slots, and a thief which still reads one of them
+	 * after it has been cleared holds a stale front index, so its compare-and-set fails.
+	 */
+	private void sweep(Object[] a, int t) {
+		for (int i = swept; t - i > 0; i++)
+			a[i & (a.length - 1)] = null;
+		swept = t;
+	}
+
+	// insert the item in the end (owner only)
+	public void addRear(Item itemNew) {
+		if (itemNew == null)
+			throw new java.lang.NullPointerException();
+
+		int b = bottom;
+		int t = index(top);
+		Object[] a = items;
+		sweep(a, t);
+		if (b - t >= a.length - 1)
+			a = grow(a, t, b);
+		a[b & (a.length - 1)] = itemNew;
+		bottom = b + 1; // publishes the item to thieves
+	}
+
+	// insert the item at the front (owner only)
+	public void addFront(Item itemNew) {
+		if (itemNew == null)
+			throw new java.lang.NullPointerException();
+
+		while (true) {
+			long tw = top;
+			int t = index(tw);
+			int b = bottom;
+			Object[] a = items;
+			sweep(a, t);
+			if (b - t >= a.length - 1)
+				a = grow(a, t, b);
+			a[(t - 1) & (a.length - 1)] = itemNew;
+			if (TOP.compareAndSet(this, tw, moved(tw, t - 1))) {
+				swept = t - 1;
+				return;
+			}
+			// a thief moved the front in the meantime
+			a[(t - 1) & (a.length - 1)] = null;
+		}
+	}
+
+	// delete and return the last item, or null if empty (owner only)
+	@SuppressWarnings("unchecked")
+	public Item pollRear() {
+		int b = bottom - 1;
+		Object[] a = items;
+		bottom = b; // claims the last item before looking at the front
+		long tw = top;
+		int t = index(tw);
+		sweep(a, t);
+		int size = b - t;
+		if (size < 0) {
+			bottom = b + 1;
+			return null;
+		}
+		int slot = b & (a.length - 1);
+		Item item = (Item) a[slot];
+		if (size > 0) {
+			// no thief can reach this item any more
+			a[slot] = null;
+			return item;
+		}
+		// the last item: thieves may be after it too
+		if (!TOP.compareAndSet(this, tw, moved(tw, t + 1)))
+			item = null;
+		// taken either way, and the front is now past it
+		a[slot] = null;
+		swept = t + 1;
+		bottom = b + 1;
+		return item;
+	}
+
+	// delete and return the last item (owner only)
+	public Item removeRear() {
+		Item item = pollRear();
+		if (item == null)
+			throw new java.util.NoSuchElementException("Deque underflow");
+		return item;
+	}
+
+	// delete and return the front item, or null if empty (any thread)
+	@SuppressWarnings("unchecked")
+	public Item pollFront() {
+		while (true) {
+			long tw = top;
+			int t = index(tw);
+			int b = bottom;
+			if (b - t <= 0)
+				return null;
+			Object[] a = items;
+			Item item = (Item) a[t & (a.length - 1)];
+			if (TOP.compareAndSet(this, tw, moved(tw, t + 1)))
+				return item;
+			// lost the race for it, to another thief or the owner
+		}
+	}
+
+	// delete and return the front item (any thread)
+	public Item removeFront() {
+		Item item = pollFront();
+		if (item == null)
+			throw new java.util.NoSuchElementException("Deque underflow");
+		return item;
+	}
+
+	/*
+	 * Iterates over a snapshot of the deque, front to rear, which may include items
+	 * taken since and miss items added since.
+	 */
+	public Iterator<Item> iterator() {
+		return new DequeIterator();
+	}
+
+	private class DequeIterator implements Iterator<Item> {
+		private final Object[] a = items;
+		private int current = index(top);
+		private final int end = bottom;
+		private Item next = advance();
+
+		@SuppressWarnings("unchecked")
+		private Item advance() {
+			while (end - current > 0) {
+				Object item = a[current++ & (a.length - 1)];
+				if (item != null)
+					return (Item) item;
+			}
+			return null;
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Item next() {
+			if (next == null)
+				throw new java.util.NoSuchElementException();
+			Item item = next;
+			next = advance();
+			return item;
+		}
+
+		public void remove() {
+			throw new java.lang.UnsupportedOperationException();
+		}
+
+	}
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Contention benchmark of ConcurrentDeque: in each group one owner thread adds at the rear
+ * and takes back some of its work, while thieves steal from the front. The same pattern on
+ * a Deque behind a lock is the baseline.
+ *
+ * The thread counts below are for a quick run; to see how stealing scales, run with
+ * -tg 1,N for N thieves (for instance 1,31 on a 32 core machine), and compare the
+ * throughput of the owner and thieves against the locked baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentDequeBenchmark {
+
+	// the owner keeps the deque at about this many items, so thieves rarely find it empty
+	private static final int BACKLOG = 1024;
+
+	@State(Scope.Group)
+	public static class Stealing {
+		ConcurrentDeque<Integer> deque;
+
+		@Setup
+		public void setUp() {
+			deque = new ConcurrentDeque<Integer>();
+		}
+	}
+
+	@State(Scope.Group)
+	public static class Locked {
+		Deque<Integer> deque;
+
+		@Setup
+		public void setUp() {
+			deque = new Deque<Integer>();
+		}
+	}
+
+	@Benchmark
+	@Group("stealing")
+	@GroupThreads(1)
+	public void owner(Stealing s, Blackhole blackhole) {
+		ConcurrentDeque<Integer> deque = s.deque;
+		if (deque.size() < BACKLOG) {
+			deque.addRear(1);
+			deque.addRear(2);
+		}
+		blackhole.consume(deque.pollRear());
+	}
+
+	@Benchmark
+	@Group("stealing")
+	@GroupThreads(3)
+	public void thief(Stealing s, Blackhole blackhole) {
+		blackhole.consume(s.deque.pollFront());
+	}
+
+	@Benchmark
+	@Group("locked")
+	@GroupThreads(1)
+	public void lockedOwner(Locked l, Blackhole blackhole) {
+		Deque<Integer> deque = l.deque;
+		synchronized (deque) {
+			if (deque.size() < BACKLOG) {
+				deque.addRear(1);
+				deque.addRear(2);
+			}
+			blackhole.consume(deque.isEmpty() ? null : deque.removeRear());
+		}
+	}
+
+	@Benchmark
+	@Group("locked")
+	@GroupThreads(3)
+	public void lockedThief(Locked l, Blackhole blackhole) {
+		Deque<Integer> deque = l.deque;
+		synchronized (deque) {
+			blackhole.consume(deque.isEmpty() ? null : deque.removeFront());
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ConcurrentDequeBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
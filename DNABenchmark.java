@@ -0,0 +1,152 @@
+package given;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * JMH benchmarks of the DNA hot paths, at sizes from 10 to 10^7 bases. Run main (or JMH
+ * with -prof gc) to get allocation rates next to the timings.
+ *
+ * Benchmarks which change their molecule get a fresh one for every call (Level.Invocation),
+ * so their timings at the smaller sizes include some JMH overhead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DNABenchmark {
+
+	// cut by the restrictionCut benchmark, once, in the middle of the sequence
+	static final String SITE = "GAATTC";
+
+	/*
+	 * A random sequence (without SITE) with SITE in the middle.
+	 */
+	static String sequence(int size, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(size + SITE.length());
+		while(sb.length() < size) {
+			sb.append("ACGT".charAt(random.nextInt(4)));
+			if(sb.indexOf(SITE, sb.length() - SITE.length()) >= 0) sb.setLength(sb.length() - 1);
+		}
+		sb.insert(size / 2, SITE);
+		return sb.toString();
+	}
+
+	@State(Scope.Benchmark)
+	public static class Sequences {
+		@Param({ "10", "1000", "100000", "10000000" })
+		public int size;
+
+		public String sequence;
+		public DNAStrand strand;
+		public DNAMolecule molecule;
+		// the two halves of molecule, cut at SITE (with sticky ends)
+		public DNAMolecule left, right;
+		// strand B (5 --> 3) for the zip offset benchmarks: a random one, unrelated to
+		// sequence, and a repetitive one, which pairs with the repetitive strand A anywhere
+		public String unrelated, repetitiveA, repetitiveB;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			sequence = sequence(size, 42);
+			unrelated = sequence(size, 43);
+			repetitiveA = "A".repeat(size);
+			repetitiveB = "T".repeat(size - 1) + "A";
+			strand = new DNAStrand(sequence);
+			molecule = new DNAMolecule(sequence);
+			left = new DNAMolecule(sequence);
+			right = left.restrictionCut(SITE);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Fresh {
+		public DNAMolecule molecule;
+
+		@Setup(Level.Invocation)
+		public void setUp(Sequences sequences) {
+			molecule = new DNAMolecule(sequences.sequence);
+		}
+	}
+
+	@Benchmark
+	public DNAStrand constructStrand(Sequences s) {
+		return new DNAStrand(s.sequence);
+	}
+
+	@Benchmark
+	public String getComplementStrand(Sequences s) {
+		return DNAStrand.getComplementStrand(s.sequence);
+	}
+
+	@Benchmark
+	public DNAMolecule constructMolecule(Sequences s) {
+		return new DNAMolecule(s.sequence);
+	}
+
+	@Benchmark
+	public boolean zipUp(Sequences s) {
+		return s.molecule.zipUp();
+	}
+
+	@Benchmark
+	public int zipOffsetUnrelated(Sequences s) {
+		return DNAMolecule.findZipOffset(s.sequence, s.unrelated);
+	}
+
+	@Benchmark
+	public int zipOffsetRepetitive(Sequences s) {
+		return DNAMolecule.findZipOffset(s.repetitiveA, s.repetitiveB);
+	}
+
+	@Benchmark
+	public DNAMolecule duplicate(Sequences s) {
+		return s.molecule.duplicate();
+	}
+
+	@Benchmark
+	public DNAMolecule tryToCombineWith(Sequences s) {
+		return s.left.tryToCombineWith(s.right);
+	}
+
+	@Benchmark
+	public DNAMolecule restrictionCut(Fresh f) {
+		return f.molecule.restrictionCut(SITE);
+	}
+
+	@Benchmark
+	public String moleculeToString(Sequences s) {
+		return s.molecule.toString();
+	}
+
+	@Benchmark
+	public String strandToString(Sequences s) {
+		return s.strand.toString();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(DNABenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
@@ -1,21 +1,42 @@
 package given;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public class DNAMolecule {
 
 	// These are the ONLY fields you are allowed in this class.
 	public DNAStrand strandA;
 	public DNAStrand strandB;
+	// Pairing offset of a molecule made by duplicate whose pairs have not been built yet,
+	// NO_OFFSET otherwise. See materialize.
+	private int lazyOffset = NO_OFFSET;
 	
 	/*
 	 * Constructs a new DNA molecule which has the given sequence as one of its strands.
 	 * The other strand will be the complement of the given strand (which will lead to a
-	 * non-ragged, perfectly connected DNA molecule).  Note that this method should call ZipUp,
-	 * to connect the two strands created in the image and complement of the given sequence.ß
+	 * non-ragged, perfectly connected DNA molecule).
+	 * 
+	 * The pairing is known (offset 0, every base paired), so zipUp is not called: both
+	 * strands start out packed, the complement made from strand A in a single pass, and the
+	 * molecule is built as one made by duplicate, its Nucleotides only when it is changed
+	 * (see materialize). Its strands may still be handed to any other constructor.
 	 */
 	public DNAMolecule(String sequence){
-		strandA = new DNAStrand(sequence);
-		strandB = new DNAStrand(strandA.fiveEnd.constructFullComplement());
-		zipUp();
+		PackedStrand packed = new PackedStrand(sequence);
+		strandA = new DNAStrand(packed);
+		strandB = new DNAStrand(packed.reverseComplement());
+		lazyOffset = 0;
 	}
 	
 	
@@ -32,6 +53,37 @@ public class DNAMolecule {
 	
 	private DNAMolecule() {}
 	
+	/*
+	 * Constructs a molecule from two strands whose pairing offset is already known.
+	 */
+	DNAMolecule(DNAStrand strandA, DNAStrand strandB, int offset) {
+		this.strandA = strandA;
+		this.strandB = strandB;
+		strandA.materialize();
+		strandB.materialize();
+		zipAt(offset);
+	}
+	
+	/*
+	 * A molecule of two packed strands paired at a given offset, whose Nucleotides are
+	 * only built when it is changed (see duplicate).
+	 */
+	static DNAMolecule lazy(PackedStrand strandA, PackedStrand strandB, int offset) {
+		DNAMolecule molecule = new DNAMolecule();
+		molecule.strandA = new DNAStrand(strandA);
+		molecule.strandB = new DNAStrand(strandB);
+		molecule.lazyOffset = offset;
+		return molecule;
+	}
+	
+	/*
+	 * Returns a compact copy of this molecule which stores each base in 2 bits and
+	 * keeps the pairing as a single offset.
+	 */
+	public PackedMolecule pack() {
+		return new PackedMolecule(this);
+	}
+	
 	
 	/*
 	 * Constructs a new molecule of DNA from an existing one.  The process you use
@@ -53,17 +105,41 @@ public class DNAMolecule {
 	 * Therefore, this method should do two things:
 	 *  - Remove one of the strands from the current molecule, and construct a new strand in its place
 	 *  - Use the removed strand to construct a NEW molecule of DNA, and return that molecule as the result of the method.
+	 * 
+	 * The new strands are not built right away: each one starts out as a view of the packed
+	 * sequence it copies (see DNAStrand.pack), and the molecule only builds its
+	 * Nucleotides and pairs them up when it is changed (cut, combined or zipped). Until then
+	 * a duplicate costs no more than packing the template once, however often it is repeated.
 	 */
 	public DNAMolecule duplicate(){
-		DNAStrand newStrandB = new DNAStrand(strandA.fiveEnd.constructFullComplementWithPeer());
-		DNAStrand newStrandA = new DNAStrand(strandB.fiveEnd.constructFullComplementWithPeer());
+		OperationEvents.Duplicate event = new OperationEvents.Duplicate();
+		event.start();
+		int packed = strandA.unpackedLength() + strandB.unpackedLength();
+		int offset = pairingOffset();
 		DNAMolecule newMolecule = new DNAMolecule();
-		newMolecule.strandA = newStrandA;
+		// a new strand has the same sequence as the one its template was paired with
+		newMolecule.strandA = new DNAStrand(strandA.pack());
 		newMolecule.strandB = strandB;
-		strandB = newStrandB;
+		newMolecule.lazyOffset = offset;
+		strandB = new DNAStrand(strandB.pack());
+		lazyOffset = offset;
+		event.finish(strandA.length(), strandB.length(), packed);
 		return newMolecule;
 	}
 	
+	/*
+	 * Builds the strands of a molecule made by duplicate and pairs them up, so that it can be
+	 * changed. Pairing them also takes the template strand back from the molecule it was
+	 * copied from (whose own view of it does not need it any more).
+	 */
+	private void materialize() {
+		if(lazyOffset == NO_OFFSET) return;
+		strandA.materialize();
+		strandB.materialize();
+		zipAt(lazyOffset);
+		lazyOffset = NO_OFFSET;
+	}
+	
 	/*
 	 * Attaches corresponding nucleotides to their partners on the opposite strand.
 	 * This method should attempt to produce the LEAST RAGGED MOLECULE POSSIBLE.
@@ -92,12 +168,72 @@ public class DNAMolecule {
 	 * This is a non-trivial part of this assignment.
 	 */
 	public boolean zipUp() {
-		String strA = strandA.toStringPlain();
-		String strB = strandB.toStringPlainReversed();
+		OperationEvents.ZipUp event = new OperationEvents.ZipUp();
+		event.start();
+		materialize();
+		// strands taken from a lazy molecule may not have their Nucleotides yet
+		strandA.materialize();
+		strandB.materialize();
+		String strA = strandA.toStringPlain(), strB = strandB.toStringPlainReversed();
+		long search = searchZipOffset(strA, strB);
+		int offset = (int) search;
+		if(offset != NO_OFFSET) zipAt(offset);
+		event.finish(strA.length(), strB.length(), search >>> 32, offset != NO_OFFSET);
+		return offset != NO_OFFSET;
+	}
+	
+	static final int NO_OFFSET = Integer.MIN_VALUE;
+	// The scan may compare this many pairs per step of an FFT over both strands (see
+	// searchZipOffset) before the FFT takes over.
+	static final int SCAN_PAIRS_PER_FFT_STEP = 8;
+	// what scanZipOffsets returns when it runs out of budget
+	private static final long OVER_BUDGET = -1L;
+	
+	/*
+	 * Finds the offset zipUp should use for strand A (3 --> 5) against strand B (5 --> 3):
+	 * base i of strA faces base (i - offset) of strB. Returns NO_OFFSET if no overlap is
+	 * fully complementary. Shared by every strand representation.
+	 */
+	static int findZipOffset(CharSequence strA, CharSequence strB) {
+		return (int) searchZipOffset(strA, strB);
+	}
+	
+	/*
+	 * findZipOffset in the low half, and the number of offsets whose overlap was checked
+	 * in the high half (for OperationStats).
+	 * 
+	 * The scan is cheap on most strands, as unrelated overlaps fail within a pair or two,
+	 * but repetitive strands can make it compare O(n * m) pairs. So it is given a budget
+	 * of pairs in the order of the cost of an FFT, and only when that runs out are all
+	 * offsets scored at once by ZipCorrelation.
+	 */
+	static long searchZipOffset(CharSequence strA, CharSequence strB) {
+		long size = strA.length() + strB.length();
+		long budget = SCAN_PAIRS_PER_FFT_STEP * size * (64 - Long.numberOfLeadingZeros(size));
+		long scan = scanZipOffsets(strA, strB, budget);
+		if(scan != OVER_BUDGET) return scan;
+		long offsets = strA.length() + strB.length() - 1;
+		return offsets << 32 | (ZipCorrelation.findZipOffset(strA, strB) & 0xffffffffL);
+	}
+	
+	/*
+	 * Tries every offset in turn, skipping those which cannot beat the best so far.
+	 * O(n * m) in the worst case. Returns the same as searchZipOffset.
+	 */
+	static long scanZipOffsets(CharSequence strA, CharSequence strB) {
+		return scanZipOffsets(strA, strB, Long.MAX_VALUE);
+	}
+	
+	/*
+	 * scanZipOffsets, giving up with OVER_BUDGET once more than budget pairs have been
+	 * compared.
+	 */
+	private static long scanZipOffsets(CharSequence strA, CharSequence strB, long budget) {
 		int offsetMin = -(strB.length() - 1);
 		int offsetMax = strA.length() - 1;
 		int bestOffset = offsetMin;
 		int bestOffsetMatched = 0;
+		long examined = 0;
 		for(int i = offsetMin; i <= offsetMax; i++) {
 			int ABegin, AEnd, BBegin;
 			ABegin = i;
@@ -105,10 +241,12 @@ public class DNAMolecule {
 			AEnd = strB.length() + i - 1;
 			if(AEnd >= strA.length()) AEnd = strA.length() - 1;
 			if(AEnd - ABegin + 1 <= bestOffsetMatched) continue;
+			examined++;
 			BBegin = -i;
 			if(BBegin < 0) BBegin = 0;
 			boolean succ = true;
-			for(int ANow = ABegin, BNow = BBegin; ANow <= AEnd; ANow++, BNow++) {
+			int ANow = ABegin;
+			for(int BNow = BBegin; ANow <= AEnd; ANow++, BNow++) {
 				char nowA = strA.charAt(ANow);
 				char nowB = strB.charAt(BNow);
 				if(!Nucleotide.isComplement(nowA, nowB)) {
@@ -116,26 +254,43 @@ public class DNAMolecule {
 					break;
 				}
 			}
+			budget -= Math.min(ANow, AEnd) - ABegin + 1;
+			if(budget < 0) return OVER_BUDGET;
 			if(succ) {
 				bestOffset = i;
 				bestOffsetMatched = AEnd - ABegin + 1;
 			}
 		}
-		if(bestOffsetMatched == 0) return false;
-		int ABegin = bestOffset; if(ABegin < 0) ABegin = 0;
-		int AEnd = strB.length() + bestOffset - 1; if(AEnd >= strA.length()) AEnd = strA.length() - 1;
-		int BBegin = -bestOffset; if(BBegin < 0) BBegin = 0;
-		Nucleotide nowA = strandA.threeEnd;
-		Nucleotide nowB = strandB.fiveEnd;
-		for(int i = 0; i < ABegin; i++) nowA = nowA.getNext();
-		for(int i = 0; i < BBegin; i++) nowB = nowB.getPrev();
-		for(int i = 0; i <= AEnd - ABegin; i++) {
+		if(bestOffsetMatched == 0) bestOffset = NO_OFFSET;
+		return examined << 32 | (bestOffset & 0xffffffffL);
+	}
+	
+	/*
+	 * Pairs up the whole overlap of the two strands at a given offset (see findZipOffset),
+	 * starting from whichever side of it sticks out less: the first pair is found by
+	 * walking in from the ends of the strands across that overhang, and the rest by
+	 * following the pairs.
+	 */
+	private void zipAt(int offset) {
+		int lenA = strandA.length();
+		int lenB = strandB.length();
+		int pairs = Math.min(lenA, lenB + offset) - Math.max(0, offset);
+		int right = lenB - lenA + offset;
+		boolean fromLeft = Math.abs(offset) <= Math.abs(right);
+		Nucleotide nowA, nowB;
+		if(fromLeft) {
+			nowA = offset > 0 ? strandA.nodeAt(offset) : strandA.threeEnd;
+			nowB = offset < 0 ? strandB.nodeAt(lenB - 1 + offset) : strandB.fiveEnd;
+		} else {
+			nowA = right < 0 ? strandA.nodeAt(lenA - 1 + right) : strandA.fiveEnd;
+			nowB = right > 0 ? strandB.nodeAt(right) : strandB.threeEnd;
+		}
+		for(int i = 0; i < pairs; i++) {
 			nowA.peer = nowB;
 			nowB.peer = nowA;
-			nowA = nowA.getNext();
-			nowB = nowB.getPrev();
+			nowA = fromLeft ? nowA.getNext() : nowA.getPrev();
+			nowB = fromLeft ? nowB.getPrev() : nowB.getNext();
 		}
-		return true;
 	}
 	
 	/*
@@ -151,17 +306,24 @@ public class DNAMolecule {
 	 * 
 	 */
 	public DNAMolecule tryToCombineWith(DNAMolecule other) {
-		DNAMolecule result;
-		result = tryCombineImpl(this.duplicate(), other.duplicate());
-		if(result != null) return result;
-		result = tryCombineImpl(other.duplicate(), this.duplicate());
-		if(result != null) return result;
-		result = tryCombineImpl(this.duplicate().flip(), other.duplicate());
-		if(result != null) return result;
-		return tryCombineImpl(this.duplicate(), other.duplicate().flip());
+		OperationEvents.Combine event = new OperationEvents.Combine();
+		event.start();
+		DNAMolecule result = tryCombineImpl(other, event);
+		event.finish(strandA.length(), other.strandA.length(), result != null);
+		return result;
+	}
+	
+	private DNAMolecule tryCombineImpl(DNAMolecule other, OperationEvents.Combine event) {
+		// only the overhangs are read to find an orientation; the copies are made for it alone
+		if(canCombine(this, false, other, false, event)) return combine(this.duplicate(), other.duplicate());
+		if(canCombine(other, false, this, false, event)) return combine(other.duplicate(), this.duplicate());
+		if(canCombine(this, true, other, false, event)) return combine(this.duplicate().flip(), other.duplicate());
+		if(canCombine(this, false, other, true, event)) return combine(this.duplicate(), other.duplicate().flip());
+		return null;
 	}
 	
 	public DNAMolecule flip() {
+		if(lazyOffset != NO_OFFSET) lazyOffset = rightOverhang();
 		DNAStrand tmp = this.strandA;
 		this.strandA = this.strandB;
 		this.strandB = tmp;
@@ -178,63 +340,124 @@ public class DNAMolecule {
 		return left;
 	}
 	
-	static private DNAMolecule tryCombineImpl(DNAMolecule left, DNAMolecule right) {
-		int offsetLeft, offsetRight;
-		if(left.strandA.fiveEnd.peer != null) {
-			if(left.strandB.threeEnd.peer != null) {
-				offsetLeft = 0;
-			} else {
-				offsetLeft = left.strandA.fiveEnd.peer.getSizeLeft();
-			}
-		} else {
-			if(left.strandB.threeEnd.peer != null) {
-				offsetLeft = -left.strandB.threeEnd.peer.getSizeRight();
-			} else {
-				throw new IllegalStateException("unzipped DNAMolecule(left)");
-			}
+	/*
+	 * Whether right (flipped or not) can be joined to the five end of left (flipped or not),
+	 * without flipping or otherwise changing either of them: the overhang of left on that
+	 * side must be the one right has on the other side (see pairingOffset), and the bases
+	 * which stick out must be complementary. The bases compared are counted in the event.
+	 */
+	static private boolean canCombine(DNAMolecule left, boolean leftFlipped, DNAMolecule right, boolean rightFlipped, OperationEvents.Combine event) {
+		// flipping a molecule swaps its offset with its right overhang
+		int overhang = leftFlipped ? left.pairingOffset() : left.rightOverhang();
+		if(overhang != (rightFlipped ? right.rightOverhang() : right.pairingOffset())) return false;
+		DNAStrand leftA = leftFlipped ? left.strandB : left.strandA;
+		DNAStrand leftB = leftFlipped ? left.strandA : left.strandB;
+		DNAStrand rightA = rightFlipped ? right.strandB : right.strandA;
+		DNAStrand rightB = rightFlipped ? right.strandA : right.strandB;
+		if(overhang > 0) {
+			// strand B of left sticks out, and faces the start of strand A of right
+			return overhangsPair(rightA, 0, leftB, overhang - 1, overhang, event);
+		} else if(overhang < 0) {
+			// strand A of left sticks out, and faces the five end of strand B of right
+			return overhangsPair(leftA, leftA.length() + overhang, rightB, rightB.length() - 1, -overhang, event);
 		}
-		if(right.strandB.fiveEnd.peer != null) {
-			if(right.strandA.threeEnd.peer != null) {
-				offsetRight = 0;
-			} else {
-				offsetRight = right.strandB.fiveEnd.peer.getSizeLeft();
-			}
+		return true;
+	}
+	
+	/*
+	 * Whether len bases of a, read forwards from fromA, complement len bases of b, read
+	 * backwards from fromB. Both runs are overhangs, so each of them reaches an end of its
+	 * strand and nodeAt walks no further than len to find where it starts.
+	 */
+	static private boolean overhangsPair(DNAStrand a, int fromA, DNAStrand b, int fromB, int len, OperationEvents.Combine event) {
+		Nucleotide nowA = a.pending == null ? a.nodeAt(fromA) : null;
+		Nucleotide nowB = b.pending == null ? b.nodeAt(fromB) : null;
+		for(int i = 0; i < len; i++) {
+			event.basesCompared++;
+			char baseA = nowA == null ? a.pending.charAt(fromA + i) : nowA.getBase();
+			char baseB = nowB == null ? b.pending.charAt(fromB - i) : nowB.getBase();
+			if(!Nucleotide.isComplement(baseA, baseB)) return false;
+			if(nowA != null) nowA = nowA.getNext();
+			if(nowB != null) nowB = nowB.getPrev();
+		}
+		return true;
+	}
+	
+	/*
+	 * Describes one end of this molecule (the three end of strand A, or its five end with
+	 * right set) the way a ligase sees it: '3' or '5' for the end of the strand which sticks
+	 * out, then its bases from the tip inwards, or "|" for a blunt end. Two ends can be
+	 * joined exactly when they stick out the same way and their bases are reverse
+	 * complements of each other (see LigationIndex).
+	 */
+	String endSignature(boolean right) {
+		int overhang = right ? rightOverhang() : pairingOffset();
+		if(overhang == 0) return "|";
+		StringBuilder sb = new StringBuilder(Math.abs(overhang) + 1);
+		if(right && overhang > 0) {
+			// strand B sticks out from its three end
+			sb.append('3');
+			appendBases(sb, strandB, true, overhang);
+		} else if(right) {
+			sb.append('5');
+			appendBases(sb, strandA, false, -overhang);
+		} else if(overhang > 0) {
+			sb.append('3');
+			appendBases(sb, strandA, true, overhang);
 		} else {
-			if(right.strandA.threeEnd.peer != null) {
-				offsetRight = right.strandA.threeEnd.peer.getSizeRight();
-			} else {
-				throw new IllegalStateException("unzipped DNAMolecule(right)");
-			}
+			sb.append('5');
+			appendBases(sb, strandB, false, -overhang);
 		}
-		if(offsetLeft != offsetRight) return null;
-		if(offsetLeft == 0) return doCombine(left, right);
-		if(offsetLeft > 0) {
+		return sb.toString();
+	}
+	
+	/*
+	 * Appends len bases of a strand, read from its three end forwards or from its five end
+	 * backwards.
+	 */
+	static private void appendBases(StringBuilder sb, DNAStrand strand, boolean fromThree, int len) {
+		if(strand.pending != null) {
+			int last = strand.pending.length() - 1;
+			for(int i = 0; i < len; i++) sb.append(strand.pending.charAt(fromThree ? i : last - i));
+			return;
+		}
+		Nucleotide now = fromThree ? strand.threeEnd : strand.fiveEnd;
+		for(int i = 0; i < len; i++) {
+			sb.append(now.getBase());
+			now = fromThree ? now.getNext() : now.getPrev();
+		}
+	}
+	
+	/*
+	 * Joins right to the five end of left, once canCombine has said they fit. Both are used
+	 * up: the result is left, which now holds the nucleotides of right as well.
+	 */
+	static DNAMolecule combine(DNAMolecule left, DNAMolecule right) {
+		left.materialize();
+		right.materialize();
+		int overhang = left.rightOverhang();
+		if(overhang > 0) {
 			Nucleotide nowA = right.strandA.threeEnd;
 			Nucleotide nowB = left.strandB.threeEnd;
-			for(int i = 0; i < offsetLeft - 1; i++) nowB = nowB.getNext();
-			for(int i = 0; i < offsetLeft; i++) {
-				if(!nowA.isComplement(nowB)) return null;
+			for(int i = 0; i < overhang - 1; i++) nowB = nowB.getNext();
+			for(int i = 0; i < overhang; i++) {
 				nowA.peer = nowB;
 				nowB.peer = nowA;
 				nowA = nowA.getNext();
 				nowB = nowB.getPrev();
 			}
-			return doCombine(left, right);
-		}
-		/* offsetLeft < 0 */ {
-			offsetLeft = -offsetLeft;
+		} else if(overhang < 0) {
 			Nucleotide nowA = left.strandA.fiveEnd;
-			for(int i = 0; i < offsetLeft - 1; i++) nowA = nowA.getPrev();
+			for(int i = 0; i < -overhang - 1; i++) nowA = nowA.getPrev();
 			Nucleotide nowB = right.strandB.fiveEnd;
-			for(int i = 0; i < offsetLeft; i++) {
-				if(!nowA.isComplement(nowB)) return null;
+			for(int i = 0; i < -overhang; i++) {
 				nowA.peer = nowB;
 				nowB.peer = nowA;
 				nowA = nowA.getNext();
 				nowB = nowB.getPrev();
 			}
-			return doCombine(left, right);
 		}
+		return doCombine(left, right);
 	}
 	
 	/*
@@ -261,56 +484,60 @@ public class DNAMolecule {
 	 */
 	
 	public String toString() {
-		String strA = strandA.toString();
-		String strB = strandB.toStringReversed();
-		int offset;
-		//offset > 0: XXXX
-		//             XXXX
-		//
-		//offset < 0:  XXXX
-		//            XXXX
-		//
-		//offset = 0: XXXX
-		//            XXXX
+		StringBuilder sb = new StringBuilder(Drawing.size(strandA.length(), strandB.length(), pairingOffset()));
+		try {
+			render(sb);
+		} catch(IOException e) {
+			// a StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+	
+	/*
+	 * Writes the drawing of toString to out as it goes along, in time linear in the size of
+	 * the molecule and without building it up in memory first: the strands are packed (two
+	 * bits a base) and drawn as PackedMolecule draws them.
+	 */
+	public void render(Appendable out) throws IOException {
+		pack().render(out);
+	}
+	
+	/*
+	 * Returns the offset of strand B against strand A, as used by zipUp:
+	 * 
+	 * offset > 0: XXXX
+	 *              XXXX
+	 * 
+	 * offset < 0:  XXXX
+	 *             XXXX
+	 * 
+	 * offset = 0: XXXX
+	 *             XXXX
+	 */
+	int pairingOffset() {
+		if(lazyOffset != NO_OFFSET) return lazyOffset;
 		if(strandA.threeEnd.peer != null) {
 			if(strandB.fiveEnd.peer != null) {
-				offset = 0;
+				return 0;
 			} else {
-				offset = -strandA.threeEnd.peer.getSizeRight();
+				return -strandA.threeEnd.peer.getSizeRight();
 			}
 		} else {
 			if(strandB.fiveEnd.peer != null) {
-				offset = strandB.fiveEnd.peer.getSizeLeft();
+				return strandB.fiveEnd.peer.getSizeLeft();
 			} else {
 				throw new IllegalStateException("unzipped DNAMolecule");
 			}
 		}
-		String strMiddle = "    ";
-		for(int i = 0; i < Math.abs(offset); i++) {
-			if(offset > 0) strB = "  " + strB;
-			else strA = "  " + strA;
-			strMiddle += "  ";
-		}
-		int nPeers = 0;
-		Nucleotide nowPeer;
-		if(offset <= 0) {
-			nowPeer = strandA.threeEnd;
-			while(nowPeer != null && nowPeer.peer != null) {
-				nPeers++;
-				nowPeer = nowPeer.getNext();
-			}
-		} else {
-			nowPeer = strandB.fiveEnd;
-			while(nowPeer != null && nowPeer.peer != null) {
-				nPeers++;
-				nowPeer = nowPeer.getPrev();
-			}
-		}
-		for(int i = 0; i < nPeers; i++) {
-			if(i < nPeers - 1) strMiddle += "| ";
-			else strMiddle += "|";
-		}
-		return strA + "\n" + strMiddle + "\n" + strB;
+	}
+	
+	/*
+	 * Number of bases by which strand B sticks out past the five end of strand A (negative
+	 * if strand A sticks out instead).
+	 */
+	private int rightOverhang() {
+		return strandB.length() - strandA.length() + pairingOffset();
 	}
 	
 	private DNAMolecule tryCutAt(Nucleotide pos, int len) {
@@ -338,35 +565,53 @@ public class DNAMolecule {
 		return newMolecule;
 	}
 	
-	public DNAMolecule restrictionCut(String sequence) {
-		Nucleotide ABegin, AEnd, BBegin/*, BEnd*/;
+	/*
+	 * The first and last nucleotides of strand A which are paired.
+	 */
+	private Nucleotide firstPairedA() {
 		if(strandA.threeEnd.peer != null) {
-			ABegin = strandA.threeEnd;
-			//BEnd = strandA.threeEnd.peer;
+			return strandA.threeEnd;
 		} else if(strandB.fiveEnd.peer != null) {
-			//BEnd = strandB.fiveEnd;
-			ABegin = strandB.fiveEnd.peer;
+			return strandB.fiveEnd.peer;
 		} else {
 			throw new IllegalStateException("unzipped DNAMolecule");
 		}
+	}
+	
+	private Nucleotide lastPairedA() {
 		if(strandA.fiveEnd.peer != null) {
-			AEnd = strandA.fiveEnd;
-			BBegin = strandA.fiveEnd.peer;
+			return strandA.fiveEnd;
 		} else if(strandB.threeEnd.peer != null) {
-			BBegin = strandB.threeEnd;
-			AEnd = strandB.threeEnd.peer;
+			return strandB.threeEnd.peer;
 		} else {
 			throw new IllegalStateException("unzipped DNAMolecule");
 		}
+	}
+	
+	public DNAMolecule restrictionCut(String sequence) {
+		OperationEvents.RestrictionCut event = new OperationEvents.RestrictionCut();
+		event.start();
+		int length = strandA.length();
+		DNAMolecule result = cutAtFirstSite(sequence, event);
+		event.finish(length, sequence.length(), result != null);
+		return result;
+	}
+	
+	private DNAMolecule cutAtFirstSite(String sequence, OperationEvents.RestrictionCut event) {
+		materialize();
+		Nucleotide ABegin = firstPairedA();
+		Nucleotide AEnd = lastPairedA();
+		Nucleotide BBegin = AEnd.peer;
 		int interval = Nucleotide.countInterval(ABegin, AEnd);
 		if(sequence.length() > interval) return null;
 		Nucleotide ANow = ABegin, BNow = BBegin;
 		for(int i = 0; i <= interval - sequence.length(); i++) {
+			event.positionsExamined += 2;
 			Nucleotide ANow2 = ANow, BNow2 = BNow;
 			boolean AFailed = false, BFailed = false;
 			for(int j = 0; j < sequence.length(); j++) {
-				if(ANow2.toString().charAt(0) != sequence.charAt(j)) AFailed = true;
-				if(BNow2.toString().charAt(0) != sequence.charAt(j)) BFailed = true;
+				if(ANow2.getBase() != sequence.charAt(j)) AFailed = true;
+				if(BNow2.getBase() != sequence.charAt(j)) BFailed = true;
 				ANow2 = ANow2.getNext();
 				BNow2 = BNow2.getNext();
 			}
@@ -383,4 +628,107 @@ public class DNAMolecule {
 		}
 		return null;
 	}
+	
+	/*
+	 * Cuts this molecule at every usable site of any of the given recognition sequences,
+	 * scanning both strands together in a single pass (see SiteMatcher). Sites are taken
+	 * in the order in which the scan reaches their end, sites on strand A first; a site is
+	 * skipped if an earlier cut took some of its pairs, or if restrictionCut would not cut
+	 * there either.
+	 * 
+	 * This molecule keeps the leftmost fragment. All of the fragments, this one first,
+	 * are returned from left to right.
+	 */
+	public List<DNAMolecule> restrictionDigest(Collection<String> sites) {
+		List<DNAMolecule> fragments = new ArrayList<DNAMolecule>();
+		Iterator<DNAMolecule> digest = new Digest(sites);
+		while(digest.hasNext()) fragments.add(digest.next());
+		return fragments;
+	}
+	
+	/*
+	 * The complete digest of restrictionDigest, as a lazy stream: the scan only goes as far
+	 * as it needs to for each fragment taken from the stream, so the whole digest stays
+	 * linear however many sites there are. The molecule must not be changed in between.
+	 */
+	public Stream<DNAMolecule> completeDigest(Collection<String> sites) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Digest(sites),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+	
+	public Stream<DNAMolecule> completeDigest(String sequence) {
+		return completeDigest(Collections.singleton(sequence));
+	}
+	
+	/*
+	 * The scan behind restrictionDigest and completeDigest. Each call to next carries on
+	 * along the paired region until the next cut, and returns the fragment to its left.
+	 */
+	private final class Digest implements Iterator<DNAMolecule> {
+		private final SiteMatcher onA;
+		// strand B is read 5 --> 3 as the scan moves along strand A, so its sites are reversed
+		private final SiteMatcher onB;
+		private DNAMolecule rest = DNAMolecule.this;
+		private Nucleotide ANow, BNow;
+		private final Nucleotide AEnd;
+		private int stateA, stateB;
+		private boolean done = false;
+		
+		Digest(Collection<String> sites) {
+			materialize();
+			onA = new SiteMatcher(sites, false);
+			onB = new SiteMatcher(sites, true);
+			ANow = firstPairedA();
+			AEnd = lastPairedA();
+			BNow = ANow.peer;
+			stateA = onA.start();
+			stateB = onB.start();
+		}
+		
+		public boolean hasNext() {
+			return !done;
+		}
+		
+		public DNAMolecule next() {
+			if(done) throw new NoSuchElementException();
+			while(ANow != null) {
+				stateA = onA.step(stateA, ANow.getBase());
+				stateB = onB.step(stateB, BNow.getBase());
+				// a cut unlinks the current column from the next one, so step before cutting
+				Nucleotide ANext = ANow == AEnd ? null : ANow.getNext();
+				Nucleotide BNext = BNow.getPrev();
+				DNAMolecule right = null;
+				for(int m = onA.firstMatch(stateA); m != -1 && right == null; m = onA.nextMatch(m)) {
+					int len = onA.siteLength(m);
+					Nucleotide pos = ANow;
+					for(int i = 1; i < len && pos != null; i++) pos = pos.getPrev();
+					if(pos != null) right = rest.tryCutAtSite(pos, len);
+				}
+				for(int m = onB.firstMatch(stateB); m != -1 && right == null; m = onB.nextMatch(m)) {
+					right = rest.tryCutAtSite(BNow, onB.siteLength(m));
+				}
+				ANow = ANext;
+				BNow = BNext;
+				if(right != null) {
+					DNAMolecule fragment = rest;
+					rest = right;
+					return fragment;
+				}
+			}
+			done = true;
+			return rest;
+		}
+	}
+	
+	/*
+	 * tryCutAt, for a site which may have lost some of its pairs to an earlier cut.
+	 */
+	private DNAMolecule tryCutAtSite(Nucleotide pos, int len) {
+		Nucleotide now = pos;
+		for(int i = 0; i < len; i++) {
+			if(now == null || now.peer == null) return null;
+			now = now.getNext();
+		}
+		return tryCutAt(pos, len);
+	}
 }
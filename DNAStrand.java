@@ -1,10 +1,15 @@
 package given;
 
+import java.nio.charset.StandardCharsets;
+
 public class DNAStrand {
 
 	// These are the ONLY fields you are allowed in this class
 	Nucleotide threeEnd;
 	Nucleotide fiveEnd;
+	// Set while this strand is only a view of a sequence whose Nucleotides have not been
+	// built yet (threeEnd and fiveEnd are then null). See materialize.
+	PackedStrand pending;
 	
 	/*
 	 * Constructs a new DNAStrand from a given sequence (in the three to five ordering)
@@ -36,11 +41,115 @@ public class DNAStrand {
 		}
 	}
 	
+	DNAStrand(Nucleotide threeEnd, Nucleotide fiveEnd) {
+		this.threeEnd = threeEnd;
+		this.fiveEnd = fiveEnd;
+	}
+	
+	/*
+	 * Constructs a lightweight strand which reads as the given sequence, but only builds
+	 * its Nucleotides when materialize is called.
+	 */
+	DNAStrand(PackedStrand pending) {
+		this.pending = pending;
+	}
+	
+	/*
+	 * Builds the Nucleotides of a lazy strand (does nothing if they are already built).
+	 */
+	void materialize() {
+		if(pending == null) return;
+		OperationEvents.Materialize event = new OperationEvents.Materialize();
+		event.start();
+		DNAStrand built = pending.toStrand();
+		threeEnd = built.threeEnd;
+		fiveEnd = built.fiveEnd;
+		threeEnd.setRope(new RopeStrand(pending.detached()));
+		event.finish(pending.length());
+		pending = null;
+	}
+	
+	/*
+	 * Number of nucleotides in this strand.
+	 */
+	public int length() {
+		if(pending != null) return pending.length();
+		return threeEnd.getSize();
+	}
+	
+	/*
+	 * The nucleotide at a given position (counted from the three end), walking from
+	 * whichever end is nearer, so in O(min(index, length - index)): the index of a strand
+	 * gives the position of a nucleotide, not the nucleotide at a position. Builds the
+	 * Nucleotides of a lazy strand first.
+	 */
+	Nucleotide nodeAt(int index) {
+		materialize();
+		int length = threeEnd.getSize();
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+		Nucleotide now;
+		if(index < length - index) {
+			now = threeEnd;
+			for(int i = 0; i < index; i++) now = now.getNext();
+		} else {
+			now = fiveEnd;
+			for(int i = length - 1; i > index; i--) now = now.getPrev();
+		}
+		return now;
+	}
+	
+	/*
+	 * The base at a given position (counted from the three end), in O(log n). Reads the
+	 * rope of this strand, which is built from the Nucleotides the first time and then
+	 * cut and joined along with them (see Nucleotide), so edits never rebuild it.
+	 */
+	public char baseAt(int index) {
+		if(pending != null) return pending.charAt(index);
+		return rope().charAt(index);
+	}
+	
+	RopeStrand rope() {
+		RopeStrand rope = threeEnd.getRope();
+		if(rope == null) {
+			rope = new RopeStrand(pack());
+			threeEnd.setRope(rope);
+		}
+		return rope;
+	}
+	
+	/*
+	 * How many bases pack() would have to pack: none if a packed copy is already kept.
+	 */
+	int unpackedLength() {
+		if(pending != null || threeEnd.getPackedStrand() != null) return 0;
+		return length();
+	}
+	
+	/*
+	 * Returns a compact copy of this strand which stores each base in 2 bits. The copy is
+	 * kept (and shared) until the strand changes.
+	 */
+	public PackedStrand pack() {
+		if(pending != null) {
+			// once copied out of an arena, the strand keeps the copy
+			pending = pending.detached();
+			return pending;
+		}
+		PackedStrand packed = threeEnd.getPackedStrand();
+		if(packed == null) {
+			RopeStrand rope = threeEnd.getRope();
+			packed = rope == null ? new PackedStrand(this) : rope.toPacked();
+			threeEnd.setPackedStrand(packed);
+		}
+		return packed;
+	}
+	
 	/*
 	 * Gives us a visual image of the Strand. Should be of the form:
 	 * (3) A=G=C=T=T=T=A=C (5)
 	 */
 	public String toString() {
+		if(pending != null) return draw(pending, "(3) ", " (5)", false);
 		StringBuilder sb = new StringBuilder();
 		sb.append("(3) ");
 		Nucleotide now = threeEnd;
@@ -58,6 +167,7 @@ public class DNAStrand {
 	}
 	
 	public String toStringReversed() {
+		if(pending != null) return draw(pending, "(5) ", " (3)", true);
 		StringBuilder sb = new StringBuilder();
 		sb.append("(5) ");
 		Nucleotide now = fiveEnd;
@@ -75,6 +185,7 @@ public class DNAStrand {
 	}
 	
 	public String toStringPlain() {
+		if(pending != null) return pending.toString();
 		StringBuilder sb = new StringBuilder();
 		Nucleotide now = threeEnd;
 		while(now != null) {
@@ -85,6 +196,7 @@ public class DNAStrand {
 	}
 	
 	public String toStringPlainReversed() {
+		if(pending != null) return pending.reverse().toString();
 		StringBuilder sb = new StringBuilder();
 		Nucleotide now = fiveEnd;
 		while(now != null) {
@@ -94,6 +206,17 @@ public class DNAStrand {
 		return sb.toString();
 	}
 	
+	private static String draw(PackedStrand bases, String begin, String end, boolean reversed) {
+		StringBuilder sb = new StringBuilder(2 * bases.length() + 8);
+		sb.append(begin);
+		for(int i = 0; i < bases.length(); i++) {
+			if(i > 0) sb.append('=');
+			sb.append(bases.charAt(reversed ? bases.length() - 1 - i : i));
+		}
+		sb.append(end);
+		return sb.toString();
+	}
+	
 	/*
 	 * Constructs the valid complement string that could be fully zipped to a given one:
 	 * (Both products and results are in 3 --> 5 order.
@@ -101,8 +224,47 @@ public class DNAStrand {
 	 * AAAA --> TTTT
 	 * ACG --> CGT
 	 * CCAA --> TTGG
+	 * 
+	 * One table lookup per base, straight into the bytes of the result (the empty strand
+	 * gives ""). Throws IllegalArgumentException on anything but A, C, G and T.
 	 */
 	public static String getComplementStrand(String s){
-		return new DNAStrand(new DNAStrand(s).fiveEnd.constructFullComplement()).toStringPlain();
+		OperationEvents.Complement event = new OperationEvents.Complement();
+		event.start();
+		int n = s.length();
+		byte[] complement = new byte[n];
+		for(int i = 0, j = n - 1; i < n; i++, j--) {
+			complement[i] = complementOf(s.charAt(j));
+		}
+		event.finish(n);
+		return new String(complement, StandardCharsets.ISO_8859_1);
+	}
+	
+	/*
+	 * The same for a sequence of ASCII bases.
+	 */
+	public static byte[] getComplementStrand(byte[] s) {
+		int n = s.length;
+		byte[] complement = new byte[n];
+		for(int i = 0, j = n - 1; i < n; i++, j--) {
+			complement[i] = complementOf(s[j]);
+		}
+		return complement;
+	}
+	
+	// the complement of each ASCII base, 0 for anything else
+	private static final byte[] COMPLEMENT = new byte[128];
+	
+	static {
+		COMPLEMENT['A'] = 'T';
+		COMPLEMENT['C'] = 'G';
+		COMPLEMENT['G'] = 'C';
+		COMPLEMENT['T'] = 'A';
+	}
+	
+	private static byte complementOf(int base) {
+		byte complement = (base & ~0x7f) == 0 ? COMPLEMENT[base] : 0;
+		if(complement == 0) throw new IllegalArgumentException();
+		return complement;
 	}
 }
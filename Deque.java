@@ -1,14 +1,20 @@
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 public class Deque<Item> implements Iterable<Item> {
+	private static final int MIN_CAPACITY = 8; // smallest array, a power of two
 	private int SIZE; // size of deque
-	private Node firstNode; // first Node
-	private Node lastNode; // last Node
+	private Item[] items; // circular buffer, its length always a power of two
+	private int head; // index of the first item
 
 	// constructor
+	@SuppressWarnings("unchecked")
 	public Deque() {
-		firstNode = null;
-		lastNode = null;
+		items = (Item[]) new Object[MIN_CAPACITY];
+		head = 0;
 		SIZE = 0;
 	}
 
@@ -19,22 +25,56 @@ public class Deque<Item> implements Iterable<Item> {
 	 */
 	@Override
 	public String toString() {
-		return "Deque [N=" + SIZE + ", first=" + firstNode + ", last="
-				+ lastNode + "]";
+		return "Deque [N=" + SIZE + ", first=" + (SIZE == 0 ? null : items[head])
+				+ ", last=" + (SIZE == 0 ? null : items[index(SIZE - 1)]) + "]";
 	}
 
-	private class Node {
-		private Item item;
-		private Node nextNode;
-		private Node prevNode;
+	// array index of the i-th item from the front
+	private int index(int i) {
+		return (head + i) & (items.length - 1);
+	}
+
+	// moves the items to a new array of the given capacity, first item at index 0
+	@SuppressWarnings("unchecked")
+	private void resize(int capacity) {
+		Item[] newItems = (Item[]) new Object[capacity];
+		int firstPart = Math.min(SIZE, items.length - head);
+		System.arraycopy(items, head, newItems, 0, firstPart);
+		System.arraycopy(items, 0, newItems, firstPart, SIZE - firstPart);
+		items = newItems;
+		head = 0;
+	}
+
+	// grows the array when full (amortized O(1))
+	private void growIfFull() {
+		growFor(1);
+	}
+
+	// grows the array, doubling it as many times as needed, to make room for
+	// more items
+	private void growFor(int more) {
+		if (more > (1 << 30) - SIZE)
+			throw new IllegalStateException("Deque overflow");
+		int capacity = items.length;
+		while (capacity - SIZE < more)
+			capacity <<= 1;
+		if (capacity != items.length)
+			resize(capacity);
+	}
+
+	// shrinks the array when at most a quarter full, halving it as many times as
+	// needed, so that it never holds on to much more room than it needs
+	private void shrinkIfSparse() {
+		int capacity = items.length;
+		while (capacity > MIN_CAPACITY && SIZE <= capacity >>> 2)
+			capacity >>>= 1;
+		if (capacity != items.length)
+			resize(capacity);
 	}
 
 	// if deque empty
 	public boolean isEmpty() {
-		if (firstNode == null)
-			return true;
-		else
-			return false;
+		return SIZE == 0;
 	}
 
 	// insert the item at the front
@@ -42,23 +82,9 @@ public class Deque<Item> implements Iterable<Item> {
 		if (itemNew == null)
 			throw new java.lang.NullPointerException();
 
-		if (firstNode == null || lastNode == null) {
-			// if first node is null and obviously last node is also null
-			Node tempNode = new Node();
-			tempNode.item = itemNew;
-			tempNode.nextNode = null;
-			tempNode.prevNode = null;
-			firstNode = tempNode;
-			lastNode = tempNode;
-		} else {
-			// inserting node in front of first
-			Node tempNode = new Node();
-			tempNode.item = itemNew;
-			tempNode.nextNode = firstNode;
-			tempNode.prevNode = null;
-			firstNode.prevNode = tempNode;
-			firstNode = tempNode;
-		}
+		growIfFull();
+		head = (head - 1) & (items.length - 1);
+		items[head] = itemNew;
 		SIZE++; // Add 1 to size
 	}
 
@@ -67,14 +93,11 @@ public class Deque<Item> implements Iterable<Item> {
 		if (isEmpty())
 			throw new java.util.NoSuchElementException("Deque underflow");
 
-		Item item = firstNode.item;
-		firstNode = firstNode.nextNode;
+		Item item = items[head];
+		items[head] = null; // so that the deque does not keep it reachable
+		head = (head + 1) & (items.length - 1);
 		SIZE--;
-
-		if (SIZE == 0) {
-			firstNode = null;
-			lastNode = null;
-		}
+		shrinkIfSparse();
 
 		return item;
 	}
@@ -84,23 +107,8 @@ public class Deque<Item> implements Iterable<Item> {
 		if (itemNew == null)
 			throw new java.lang.NullPointerException();
 
-		if (lastNode == null || firstNode == null) {
-			// if first node is null and obviously last node is also null
-			Node tempNode = new Node();
-			tempNode.item = itemNew;
-			tempNode.nextNode = null;
-			tempNode.prevNode = null;
-			firstNode = tempNode;
-			lastNode = tempNode;
-		} else {
-			// insert node back of last
-			Node tempNode = new Node();
-			tempNode.item = itemNew;
-			tempNode.nextNode = null;
-			tempNode.prevNode = lastNode;
-			lastNode.nextNode = tempNode;
-			lastNode = tempNode;
-		}
+		growIfFull();
+		items[index(SIZE)] = itemNew;
 		SIZE++;
 	}
 
@@ -109,18 +117,80 @@ public class Deque<Item> implements Iterable<Item> {
 		if (isEmpty())
 			throw new java.util.NoSuchElementException("Deque underflow");
 
-		Item item = lastNode.item;
-		lastNode = lastNode.prevNode;
-		if (lastNode != null)
-			lastNode.nextNode = null;
+		int last = index(SIZE - 1);
+		Item item = items[last];
+		items[last] = null;
 		SIZE--;
+		shrinkIfSparse();
+
+		return item;
+	}
+
+	// insert all the items at the end, in the order of the collection
+	public void addAllRear(Collection<? extends Item> c) {
+		Object[] newItems = checkedArray(c);
+		growFor(newItems.length);
+		int start = index(SIZE);
+		int firstPart = Math.min(newItems.length, items.length - start);
+		System.arraycopy(newItems, 0, items, start, firstPart);
+		System.arraycopy(newItems, firstPart, items, 0, newItems.length - firstPart);
+		SIZE += newItems.length;
+	}
 
-		if (SIZE == 0) {
-			firstNode = null;
-			lastNode = null;
+	// insert all the items at the front, in the order of the collection (so the
+	// first item of the collection becomes the front item)
+	public void addAllFront(Collection<? extends Item> c) {
+		Object[] newItems = checkedArray(c);
+		growFor(newItems.length);
+		int start = (head - newItems.length) & (items.length - 1);
+		int firstPart = Math.min(newItems.length, items.length - start);
+		System.arraycopy(newItems, 0, items, start, firstPart);
+		System.arraycopy(newItems, firstPart, items, 0, newItems.length - firstPart);
+		head = start;
+		SIZE += newItems.length;
+	}
+
+	// the items of a collection, none of them null (otherwise nothing is added)
+	private static Object[] checkedArray(Collection<?> c) {
+		Object[] newItems = c.toArray();
+		for (Object item : newItems)
+			if (item == null)
+				throw new java.lang.NullPointerException();
+		return newItems;
+	}
+
+	// delete up to max items from the front, passing each one to the consumer
+	// in order, and return how many were deleted; each item is deleted before it
+	// is passed on, so if the consumer throws, the deque holds the items it has
+	// not been given yet
+	public int drainTo(Consumer<? super Item> consumer, int max) {
+		if (max < 0)
+			throw new IllegalArgumentException("negative max");
+		int n = Math.min(max, SIZE);
+		for (int i = 0; i < n; i++) {
+			Item item = items[head];
+			items[head] = null;
+			head = (head + 1) & (items.length - 1);
+			SIZE--;
+			consumer.accept(item);
 		}
+		shrinkIfSparse();
+		return n;
+	}
 
-		return item;
+	// delete and return the n front items, front first
+	public List<Item> removeFront(int n) {
+		if (n < 0)
+			throw new IllegalArgumentException("negative count");
+		if (n > SIZE)
+			throw new java.util.NoSuchElementException("Deque underflow");
+		final List<Item> removed = new java.util.ArrayList<Item>(n);
+		drainTo(new Consumer<Item>() {
+			public void accept(Item item) {
+				removed.add(item);
+			}
+		}, n);
+		return removed;
 	}
 
 	// return the number of items on the deque
@@ -132,19 +202,67 @@ public class Deque<Item> implements Iterable<Item> {
 		return new DequeIterator();
 	}
 
+	/*
+	 * A spliterator which knows its exact size and splits its range of items in
+	 * half, so that parallel streams over the deque divide the work evenly. The
+	 * deque must not be changed while it is in use.
+	 */
+	@Override
+	public Spliterator<Item> spliterator() {
+		return new DequeSpliterator(0, SIZE);
+	}
+
+	private class DequeSpliterator implements Spliterator<Item> {
+		private int current; // position (from the front) of the next item
+		private final int end; // position just past the last item
+
+		DequeSpliterator(int current, int end) {
+			this.current = current;
+			this.end = end;
+		}
+
+		public boolean tryAdvance(Consumer<? super Item> action) {
+			if (current >= end)
+				return false;
+			action.accept(items[index(current++)]);
+			return true;
+		}
+
+		public void forEachRemaining(Consumer<? super Item> action) {
+			while (current < end)
+				action.accept(items[index(current++)]);
+		}
+
+		public Spliterator<Item> trySplit() {
+			int middle = (current + end) >>> 1;
+			if (middle <= current)
+				return null;
+			DequeSpliterator prefix = new DequeSpliterator(current, middle);
+			current = middle;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return end - current;
+		}
+
+		public int characteristics() {
+			return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+					| Spliterator.NONNULL;
+		}
+	}
+
 	private class DequeIterator implements Iterator<Item> {
-		private Node current = firstNode;
+		private int current = 0; // items returned so far
 
 		public boolean hasNext() {
-			return current != null;
+			return current < SIZE;
 		}
 
 		public Item next() {
-			if (current == null)
+			if (current >= SIZE)
 				throw new java.util.NoSuchElementException();
-			Item item = current.item;
-			current = current.nextNode;
-			return item;
+			return items[index(current++)];
 		}
 
 		public void remove() {
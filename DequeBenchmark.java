@@ -0,0 +1,79 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * JMH benchmarks of Deque, each one going through size items (from 10 to 10^7). Run main
+ * (or JMH with -prof gc) to get allocation rates next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DequeBenchmark {
+
+	@Param({ "10", "1000", "100000", "10000000" })
+	public int size;
+
+	private Deque<Integer> full;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		full = new Deque<Integer>();
+		for(int i = 0; i < size; i++) full.addRear(i);
+	}
+
+	// fills a new deque from the rear and empties it from the front (a queue)
+	@Benchmark
+	public void addRearRemoveFront(Blackhole blackhole) {
+		Deque<Integer> d = new Deque<Integer>();
+		for(int i = 0; i < size; i++) d.addRear(i);
+		while(!d.isEmpty()) blackhole.consume(d.removeFront());
+	}
+
+	// fills a new deque from the front and empties it from the front (a stack)
+	@Benchmark
+	public void addFrontRemoveFront(Blackhole blackhole) {
+		Deque<Integer> d = new Deque<Integer>();
+		for(int i = 0; i < size; i++) d.addFront(i);
+		while(!d.isEmpty()) blackhole.consume(d.removeFront());
+	}
+
+	// fills a new deque from the rear and empties it from the rear (a stack)
+	@Benchmark
+	public void addRearRemoveRear(Blackhole blackhole) {
+		Deque<Integer> d = new Deque<Integer>();
+		for(int i = 0; i < size; i++) d.addRear(i);
+		while(!d.isEmpty()) blackhole.consume(d.removeRear());
+	}
+
+	@Benchmark
+	public void iterate(Blackhole blackhole) {
+		for(Integer item : full) blackhole.consume(item);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(DequeBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
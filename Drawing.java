@@ -0,0 +1,120 @@
+package given;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/*
+ * Writes the drawing of a molecule (see DNAMolecule.toString) to an Appendable through a
+ * small buffer, so that the whole drawing is never held in memory unless it is asked for.
+ */
+final class Drawing {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Appendable out;
+	private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE);
+
+	Drawing(Appendable out) {
+		this.out = out;
+	}
+
+	Drawing append(char c) throws IOException {
+		buffer.append(c);
+		if(buffer.length() >= BUFFER_SIZE) flush();
+		return this;
+	}
+
+	Drawing append(String s) throws IOException {
+		buffer.append(s);
+		if(buffer.length() >= BUFFER_SIZE) flush();
+		return this;
+	}
+
+	Drawing spaces(int n) throws IOException {
+		for(int i = 0; i < n; i++) append(' ');
+		return this;
+	}
+
+	/*
+	 * The paired bases, as "| | |".
+	 */
+	Drawing pairs(int n) throws IOException {
+		for(int i = 0; i < n; i++) {
+			if(i > 0) append(' ');
+			append('|');
+		}
+		return this;
+	}
+
+	/*
+	 * The same for pairs numbered from first on, leaving a blank for those in unpaired
+	 * (sorted), as "| |   |".
+	 */
+	Drawing pairs(int n, int[] unpaired, int first) throws IOException {
+		if(unpaired.length == 0) return pairs(n);
+		int k = 0;
+		while(k < unpaired.length && unpaired[k] < first) k++;
+		for(int i = 0; i < n; i++) {
+			if(i > 0) append(' ');
+			if(k < unpaired.length && unpaired[k] == first + i) {
+				append(' ');
+				k++;
+			} else {
+				append('|');
+			}
+		}
+		return this;
+	}
+
+	/*
+	 * The whole drawing of a molecule, as DNAMolecule.toString, leaving a blank for the
+	 * pairs of strand A in unpaired (sorted positions). Flushes at the end.
+	 */
+	void molecule(MoleculeBases m, int[] unpaired) throws IOException {
+		int lengthA = m.lengthA(), lengthB = m.lengthB(), offset = m.pairingOffset();
+		int pad = 2 * Math.abs(offset);
+		if(offset < 0) spaces(pad);
+		append("(3) ");
+		for(int i = 0; i < lengthA; i++) {
+			if(i > 0) append('=');
+			append(m.baseA(i));
+		}
+		append(" (5)\n    ").spaces(pad);
+		int first = RestrictionCuts.pairedBegin(m);
+		pairs(RestrictionCuts.pairedEnd(m) - first, unpaired, first).append('\n');
+		if(offset > 0) spaces(pad);
+		append("(5) ");
+		for(int i = lengthB - 1; i >= 0; i--) {
+			append(m.baseB(i));
+			if(i > 0) append('=');
+		}
+		append(" (3)");
+		flush();
+	}
+
+	/*
+	 * The same drawing as a String.
+	 */
+	static String toString(MoleculeBases m, int[] unpaired) {
+		StringBuilder sb = new StringBuilder(size(m.lengthA(), m.lengthB(), m.pairingOffset()));
+		try {
+			new Drawing(sb).molecule(m, unpaired);
+		} catch(IOException e) {
+			// a StringBuilder never throws
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	void flush() throws IOException {
+		out.append(buffer);
+		buffer.setLength(0);
+	}
+
+	/*
+	 * Room for the drawing of a molecule, for callers which want it as a String.
+	 */
+	static int size(int lengthA, int lengthB, int offset) {
+		return 2 * (lengthA + lengthB + 2 * Math.abs(offset)) + 24;
+	}
+}
@@ -0,0 +1,201 @@
+package given;
+
+import java.util.Arrays;
+
+/*
+ * FM-index over both strands of a molecule (strand A, a separator, strand B, an end mark):
+ * the Burrows-Wheeler transform with occurrence counts sampled every OCC_STEP rows, and the
+ * suffix array sampled every SA_STEP text positions. Once built, count takes O(m) for a
+ * site of length m and locate O(m + occurrences), independent of the length of the
+ * molecule.
+ *
+ * Strands are immutable, so an index stays valid for as long as its strands are used, and
+ * for every view of them (see locateIn).
+ */
+public final class FMIndex {
+
+	private static final int OCC_STEP = 64;
+	private static final int SA_STEP = 32;
+	// symbols: the end of the text, the separator after strand A, then A, C, G and T
+	// (PackedStrand codes + 2); the end must be unique and smallest for the LF mapping
+	private static final int SYMBOLS = 6;
+
+	private final PackedStrand strandA, strandB;
+	private final int n;
+	private final byte[] bwt;
+	// number of symbols smaller than each symbol
+	private final int[] smaller = new int[SYMBOLS + 1];
+	// occurrences of each symbol in bwt[0, OCC_STEP * k), at [SYMBOLS * k + symbol]
+	private final int[] occ;
+	// rows whose suffix starts at a multiple of SA_STEP, their rank among such rows
+	// before each word, and the positions of their suffixes in row order
+	private final long[] sampled;
+	private final int[] sampledBefore;
+	private final int[] samples;
+
+	public FMIndex(PackedStrand strandA, PackedStrand strandB) {
+		this.strandA = strandA;
+		this.strandB = strandB;
+		int lenA = strandA.length(), lenB = strandB.length();
+		if(lenA > Integer.MAX_VALUE - 2 - lenB) throw new IllegalArgumentException("molecule too long to index");
+		n = lenA + lenB + 2;
+		byte[] text = new byte[n];
+		for(int i = 0; i < lenA; i++) text[i] = (byte) (strandA.code(i) + 2);
+		text[lenA] = 1;
+		for(int i = 0; i < lenB; i++) text[lenA + 1 + i] = (byte) (strandB.code(i) + 2);
+		int[] sa = suffixArray(text);
+		bwt = new byte[n];
+		occ = new int[SYMBOLS * (n / OCC_STEP + 1)];
+		sampled = new long[(n + 63) >>> 6];
+		int[] counts = new int[SYMBOLS];
+		int nSamples = 0;
+		for(int row = 0; row < n; row++) {
+			if(row % OCC_STEP == 0) System.arraycopy(counts, 0, occ, SYMBOLS * (row / OCC_STEP), SYMBOLS);
+			int pos = sa[row];
+			bwt[row] = text[pos == 0 ? n - 1 : pos - 1];
+			counts[bwt[row]]++;
+			if(pos % SA_STEP == 0) {
+				sampled[row >>> 6] |= 1L << row;
+				nSamples++;
+			}
+		}
+		// occ(symbol, n) reads the block at n when n is a multiple of OCC_STEP
+		if(n % OCC_STEP == 0) System.arraycopy(counts, 0, occ, SYMBOLS * (n / OCC_STEP), SYMBOLS);
+		for(int c = 0; c < SYMBOLS; c++) smaller[c + 1] = smaller[c] + counts[c];
+		sampledBefore = new int[sampled.length];
+		for(int w = 1; w < sampled.length; w++) sampledBefore[w] = sampledBefore[w - 1] + Long.bitCount(sampled[w - 1]);
+		samples = new int[nSamples];
+		for(int row = 0, k = 0; row < n; row++) {
+			if(sa[row] % SA_STEP == 0) samples[k++] = sa[row];
+		}
+	}
+
+	/*
+	 * Sorts the suffixes of text by prefix doubling (two counting sorts per round), in
+	 * O(n log n).
+	 */
+	private static int[] suffixArray(byte[] text) {
+		int n = text.length;
+		int[] sa = new int[n], rank = new int[n], tmp = new int[n];
+		int[] count = new int[Math.max(SYMBOLS, n) + 1];
+		for(int i = 0; i < n; i++) count[text[i] + 1]++;
+		for(int c = 1; c <= SYMBOLS; c++) count[c] += count[c - 1];
+		for(int i = 0; i < n; i++) sa[count[text[i]]++] = i;
+		for(int i = 0; i < n; i++) rank[i] = text[i];
+		int ranks = SYMBOLS;
+		for(int k = 1; ; k <<= 1) {
+			// by second key: suffixes too short to have one first, then in the current order
+			int p = 0;
+			for(int i = n - k; i < n; i++) if(i >= 0) tmp[p++] = i;
+			for(int i = 0; i < n; i++) if(sa[i] >= k) tmp[p++] = sa[i] - k;
+			// then stably by first key
+			Arrays.fill(count, 0, ranks + 1, 0);
+			for(int i = 0; i < n; i++) count[rank[i] + 1]++;
+			for(int r = 1; r <= ranks; r++) count[r] += count[r - 1];
+			for(int i = 0; i < n; i++) sa[count[rank[tmp[i]]]++] = tmp[i];
+			// new ranks, reusing tmp
+			tmp[sa[0]] = 0;
+			for(int i = 1; i < n; i++) {
+				int a = sa[i - 1], b = sa[i];
+				boolean same = rank[a] == rank[b]
+						&& (a + k < n ? rank[a + k] : -1) == (b + k < n ? rank[b + k] : -1);
+				tmp[b] = tmp[a] + (same ? 0 : 1);
+			}
+			int[] swap = rank; rank = tmp; tmp = swap;
+			ranks = rank[sa[n - 1]] + 1;
+			if(ranks == n || k >= n) return sa;
+		}
+	}
+
+	private int occ(int symbol, int row) {
+		int block = row / OCC_STEP;
+		int count = occ[SYMBOLS * block + symbol];
+		for(int i = block * OCC_STEP; i < row; i++) {
+			if(bwt[i] == symbol) count++;
+		}
+		return count;
+	}
+
+	/*
+	 * The rows [from, to) of the suffixes starting with the site, as a long (from in the
+	 * high half), empty if it does not occur.
+	 */
+	private long range(CharSequence site) {
+		if(site.length() == 0) throw new IllegalArgumentException("empty recognition sequence");
+		int from = 0, to = n;
+		for(int i = site.length() - 1; i >= 0 && from < to; i--) {
+			int symbol = PackedStrand.code(site.charAt(i)) + 2;
+			from = smaller[symbol] + occ(symbol, from);
+			to = smaller[symbol] + occ(symbol, to);
+		}
+		return (long) from << 32 | Math.max(from, to);
+	}
+
+	/*
+	 * Number of times the site occurs on either strand.
+	 */
+	public int count(CharSequence site) {
+		long range = range(site);
+		return (int) range - (int) (range >>> 32);
+	}
+
+	/*
+	 * Position in the text of the suffix in a given row: follows the LF mapping back to
+	 * a sampled row.
+	 */
+	private int position(int row) {
+		int steps = 0;
+		while((sampled[row >>> 6] & (1L << row)) == 0) {
+			int symbol = bwt[row];
+			row = smaller[symbol] + occ(symbol, row);
+			steps++;
+		}
+		int k = sampledBefore[row >>> 6] + Long.bitCount(sampled[row >>> 6] & ((1L << row) - 1));
+		return samples[k] + steps;
+	}
+
+	/*
+	 * Where the site starts on strand A (three to five), in increasing order.
+	 */
+	public int[] locateOnA(CharSequence site) {
+		return locate(site, 0, strandA.length());
+	}
+
+	public int[] locateOnB(CharSequence site) {
+		return locate(site, strandA.length() + 1, strandB.length());
+	}
+
+	/*
+	 * Where the site starts on a strand which is a view (see PackedStrand.subSequence) of
+	 * one of the indexed strands, or null if it is not.
+	 */
+	int[] locateIn(PackedStrand strand, CharSequence site) {
+		if(strand.words == strandA.words && strand.start >= strandA.start
+				&& strand.start - strandA.start <= strandA.length - strand.length) {
+			return locate(site, strand.start - strandA.start, strand.length);
+		}
+		if(strand.words == strandB.words && strand.start >= strandB.start
+				&& strand.start - strandB.start <= strandB.length - strand.length) {
+			return locate(site, strandA.length + 1 + strand.start - strandB.start, strand.length);
+		}
+		return null;
+	}
+
+	/*
+	 * Occurrences of the site lying wholly in text [from, from + length), relative to from.
+	 */
+	private int[] locate(CharSequence site, int from, int length) {
+		long range = range(site);
+		int first = (int) (range >>> 32), end = (int) range;
+		int last = from + length - site.length();
+		int[] found = new int[end - first];
+		int k = 0;
+		for(int row = first; row < end; row++) {
+			int pos = position(row);
+			if(pos >= from && pos <= last) found[k++] = pos - from;
+		}
+		found = Arrays.copyOf(found, k);
+		Arrays.sort(found);
+		return found;
+	}
+}
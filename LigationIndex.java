@@ -0,0 +1,177 @@
+package given;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Indexes the ends of a pool of molecules by their sticky end (see
+ * DNAMolecule.endSignature), so that the partners of an end are found with one hash lookup
+ * instead of trying tryToCombineWith against every molecule of the pool.
+ *
+ * Molecules must not be changed while they are in the index (except by ligateAll).
+ */
+public final class LigationIndex {
+
+	private final boolean bluntEnds;
+	private final Map<String, ArrayDeque<End>> ends = new HashMap<String, ArrayDeque<End>>();
+	private final Map<DNAMolecule, Entry> entries = new IdentityHashMap<DNAMolecule, Entry>();
+
+	/*
+	 * An index which joins blunt ends as well as sticky ones, as tryToCombineWith does.
+	 */
+	public LigationIndex() {
+		this(true);
+	}
+
+	public LigationIndex(boolean bluntEnds) {
+		this.bluntEnds = bluntEnds;
+	}
+
+	// A molecule as it was when added; removing it only marks it, and its ends are dropped
+	// from their buckets when a lookup comes across them.
+	private static final class Entry {
+		final DNAMolecule molecule;
+		final String left, right;
+		boolean live = true;
+
+		Entry(DNAMolecule molecule) {
+			this.molecule = molecule;
+			left = molecule.endSignature(false);
+			right = molecule.endSignature(true);
+		}
+	}
+
+	private static final class End {
+		final Entry entry;
+		final boolean right;
+
+		End(Entry entry, boolean right) {
+			this.entry = entry;
+			this.right = right;
+		}
+	}
+
+	public void add(DNAMolecule molecule) {
+		if(entries.containsKey(molecule)) return;
+		Entry entry = new Entry(molecule);
+		entries.put(molecule, entry);
+		addEnd(entry.left, new End(entry, false));
+		addEnd(entry.right, new End(entry, true));
+	}
+
+	public void addAll(Collection<DNAMolecule> molecules) {
+		for(DNAMolecule molecule : molecules) add(molecule);
+	}
+
+	private void addEnd(String signature, End end) {
+		if(!bluntEnds && signature.equals("|")) return;
+		ArrayDeque<End> bucket = ends.get(signature);
+		if(bucket == null) {
+			bucket = new ArrayDeque<End>();
+			ends.put(signature, bucket);
+		}
+		bucket.add(end);
+	}
+
+	public boolean remove(DNAMolecule molecule) {
+		Entry entry = entries.remove(molecule);
+		if(entry == null) return false;
+		entry.live = false;
+		return true;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/*
+	 * The molecules of the index (other than the given one) which can be joined to it
+	 * by at least one of their ends.
+	 */
+	public List<DNAMolecule> partners(DNAMolecule molecule) {
+		List<DNAMolecule> partners = new ArrayList<DNAMolecule>();
+		Map<DNAMolecule, Boolean> seen = new IdentityHashMap<DNAMolecule, Boolean>();
+		for(int side = 0; side < 2; side++) {
+			ArrayDeque<End> bucket = bucket(partnerSignature(molecule.endSignature(side == 1)));
+			if(bucket == null) continue;
+			for(End end : bucket) {
+				DNAMolecule other = end.entry.molecule;
+				if(end.entry.live && other != molecule && seen.put(other, Boolean.TRUE) == null) partners.add(other);
+			}
+		}
+		return partners;
+	}
+
+	/*
+	 * Joins molecules of the index, two at a time by any pair of matching ends, until no
+	 * two left can be joined, and returns what is left (which stays in the index). Each
+	 * join takes a hash lookup and the length of the overhang, so the whole pool is
+	 * assembled in time linear in its number of molecules.
+	 *
+	 * The molecules are used up, as in DNAMolecule.combine. A molecule is never joined to
+	 * itself (which would make it circular).
+	 */
+	public List<DNAMolecule> ligateAll() {
+		ArrayDeque<Entry> work = new ArrayDeque<Entry>(entries.values());
+		while(!work.isEmpty()) {
+			Entry entry = work.poll();
+			if(!entry.live) continue;
+			for(int side = 1; side >= 0; side--) {
+				boolean right = side == 1;
+				End partner = findPartner(entry, right ? entry.right : entry.left);
+				if(partner == null) continue;
+				remove(entry.molecule);
+				remove(partner.entry.molecule);
+				DNAMolecule joined = join(entry.molecule, right, partner.entry.molecule, partner.right);
+				add(joined);
+				work.add(entries.get(joined));
+				break;
+			}
+		}
+		return new ArrayList<DNAMolecule>(entries.keySet());
+	}
+
+	private End findPartner(Entry entry, String signature) {
+		if(!bluntEnds && signature.equals("|")) return null;
+		ArrayDeque<End> bucket = bucket(partnerSignature(signature));
+		if(bucket == null) return null;
+		while(!bucket.isEmpty() && !bucket.peek().entry.live) bucket.poll();
+		for(End end : bucket) {
+			if(end.entry.live && end.entry != entry) return end;
+		}
+		return null;
+	}
+
+	private ArrayDeque<End> bucket(String signature) {
+		return ends.get(signature);
+	}
+
+	/*
+	 * Joins an end of one molecule to an end of another, flipping whichever needs it.
+	 */
+	private static DNAMolecule join(DNAMolecule a, boolean aRight, DNAMolecule b, boolean bRight) {
+		if(aRight && !bRight) return DNAMolecule.combine(a, b);
+		if(!aRight && bRight) return DNAMolecule.combine(b, a);
+		if(aRight) return DNAMolecule.combine(a, b.flip());
+		return DNAMolecule.combine(a.flip(), b);
+	}
+
+	/*
+	 * The signature of the ends which can be joined to an end with the given one: same
+	 * kind of end, reverse complement bases.
+	 */
+	static String partnerSignature(String signature) {
+		if(signature.equals("|")) return signature;
+		StringBuilder sb = new StringBuilder(signature.length());
+		sb.append(signature.charAt(0));
+		for(int i = signature.length() - 1; i > 0; i--) {
+			sb.append(PackedStrand.base(PackedStrand.code(signature.charAt(i)) ^ 3));
+		}
+		return sb.toString();
+	}
+}
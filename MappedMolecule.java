@@ -0,0 +1,123 @@
+package given;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * A molecule written by MoleculeIO, opened from a file by memory mapping it. Only the
+ * header is decoded up front: single bases are read straight from the mapping, and each
+ * strand is decoded into a PackedStrand the first time it is asked for.
+ */
+public final class MappedMolecule {
+
+	private final int lengthA, lengthB, offset;
+	private final LongBuffer wordsA, wordsB;
+	private final long end;
+	private PackedStrand strandA, strandB;
+
+	private MappedMolecule(FileChannel channel, long position) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, position, MoleculeIO.HEADER_SIZE);
+		header.order(ByteOrder.BIG_ENDIAN);
+		int magic = header.getInt();
+		int version = header.getInt();
+		lengthA = header.getInt();
+		lengthB = header.getInt();
+		offset = header.getInt();
+		int right = header.getInt();
+		MoleculeIO.checkHeader(magic, version, lengthA, lengthB, offset, right);
+		long startA = position + MoleculeIO.HEADER_SIZE;
+		long startB = startA + 8L * PackedStrand.wordsFor(lengthA);
+		end = startB + 8L * PackedStrand.wordsFor(lengthB);
+		if(end > channel.size()) throw new IllegalArgumentException("truncated DNAMolecule");
+		wordsA = map(channel, startA, lengthA);
+		wordsB = map(channel, startB, lengthB);
+	}
+
+	private static LongBuffer map(FileChannel channel, long start, int length) throws IOException {
+		ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, 8L * PackedStrand.wordsFor(length));
+		return bytes.order(ByteOrder.BIG_ENDIAN).asLongBuffer();
+	}
+
+	public static MappedMolecule open(Path file) throws IOException {
+		return open(file, 0);
+	}
+
+	/*
+	 * Opens the molecule starting at a given position of the file (for files holding
+	 * several molecules, see end()). The mapping stays valid after the file is closed.
+	 */
+	public static MappedMolecule open(Path file, long position) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new MappedMolecule(channel, position);
+		}
+	}
+
+	/*
+	 * Position in the file just past this molecule, where the next one (if any) starts.
+	 */
+	public long end() {
+		return end;
+	}
+
+	public int lengthA() {
+		return lengthA;
+	}
+
+	public int lengthB() {
+		return lengthB;
+	}
+
+	public int pairingOffset() {
+		return offset;
+	}
+
+	public int leftOverhang() {
+		return offset;
+	}
+
+	public int rightOverhang() {
+		return lengthB - lengthA + offset;
+	}
+
+	public char baseA(int index) {
+		return baseAt(wordsA, lengthA, index);
+	}
+
+	public char baseB(int index) {
+		return baseAt(wordsB, lengthB, index);
+	}
+
+	private static char baseAt(LongBuffer words, int length, int index) {
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+		return PackedStrand.base((int) (words.get(index >>> 5) >>> ((index & 31) << 1)) & 3);
+	}
+
+	public PackedStrand strandA() {
+		if(strandA == null) strandA = decode(wordsA, lengthA);
+		return strandA;
+	}
+
+	public PackedStrand strandB() {
+		if(strandB == null) strandB = decode(wordsB, lengthB);
+		return strandB;
+	}
+
+	private static PackedStrand decode(LongBuffer mapped, int length) {
+		long[] words = new long[PackedStrand.wordsFor(length)];
+		mapped.duplicate().get(words);
+		return new PackedStrand(words, 0, length);
+	}
+
+	public PackedMolecule toPacked() {
+		return new PackedMolecule(strandA(), strandB(), offset);
+	}
+
+	public DNAMolecule toMolecule() {
+		return toPacked().unpack();
+	}
+}
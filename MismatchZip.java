@@ -0,0 +1,117 @@
+package given;
+
+import java.util.Arrays;
+
+/*
+ * Finds zipUp offsets which leave up to a given number of facing pairs mismatched.
+ *
+ * Both strands are split into two bit-planes (the low and the high bit of each 2-bit code),
+ * 64 bases to a word. Two facing bases are complementary exactly when their codes differ
+ * in both bits (see PackedStrand), so for 64 facing pairs at once
+ *
+ *   mismatched = ~((lowA ^ lowB) & (highA ^ highB))
+ *
+ * and the mismatches of an overlap are counted with a popcount per 64 pairs. Offsets are
+ * tried longest overlap first, and counting stops as soon as the budget is exceeded (in
+ * the first word for unrelated sequences), so most offsets cost a word or two.
+ */
+final class MismatchZip {
+
+	private MismatchZip() {}
+
+	/*
+	 * Same contract as DNAMolecule.findZipOffset (strA 3 --> 5, strB 5 --> 3), except that
+	 * up to maxMismatches facing pairs of the overlap need not be complementary. Returns
+	 * the offset of the longest such overlap (the first of them, as findZipOffset does).
+	 */
+	static int findZipOffset(PackedStrand strA, PackedStrand strB, int maxMismatches) {
+		int lenA = strA.length, lenB = strB.length;
+		long[] lowA = plane(strA, 0), highA = plane(strA, 1);
+		long[] lowB = plane(strB, 0), highB = plane(strB, 1);
+		// offsets whose overlap is the whole of the shorter strand
+		int plateauLow = Math.min(0, lenA - lenB), plateauHigh = Math.max(0, lenA - lenB);
+		int longest = Math.min(lenA, lenB);
+		for(int i = plateauLow; i <= plateauHigh; i++) {
+			if(fits(lowA, highA, lowB, highB, i, longest, maxMismatches)) return i;
+		}
+		// then shorter overlaps, two offsets for each length: strand B sticking out at the
+		// three end of strand A, and at its five end
+		for(int overlap = longest - 1; overlap > 0; overlap--) {
+			if(fits(lowA, highA, lowB, highB, overlap - lenB, overlap, maxMismatches)) return overlap - lenB;
+			if(fits(lowA, highA, lowB, highB, lenA - overlap, overlap, maxMismatches)) return lenA - overlap;
+		}
+		return DNAMolecule.NO_OFFSET;
+	}
+
+	private static boolean fits(long[] lowA, long[] highA, long[] lowB, long[] highB, int offset, int overlap, int maxMismatches) {
+		int fromA = Math.max(0, offset), fromB = Math.max(0, -offset);
+		int mismatches = 0;
+		for(int done = 0; done < overlap; done += 64) {
+			long word = mismatched(lowA, highA, lowB, highB, fromA + done, fromB + done, overlap - done);
+			mismatches += Long.bitCount(word);
+			if(mismatches > maxMismatches) return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Positions in strA of the facing pairs which are not complementary at a given offset,
+	 * in increasing order.
+	 */
+	static int[] mismatches(PackedStrand strA, PackedStrand strB, int offset) {
+		long[] lowA = plane(strA, 0), highA = plane(strA, 1);
+		long[] lowB = plane(strB, 0), highB = plane(strB, 1);
+		int fromA = Math.max(0, offset), fromB = Math.max(0, -offset);
+		int overlap = Math.min(strA.length, strB.length + offset) - fromA;
+		int[] found = new int[16];
+		int k = 0;
+		for(int done = 0; done < overlap; done += 64) {
+			long word = mismatched(lowA, highA, lowB, highB, fromA + done, fromB + done, overlap - done);
+			for(; word != 0; word &= word - 1) {
+				if(k == found.length) found = Arrays.copyOf(found, 2 * k);
+				found[k++] = fromA + done + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return Arrays.copyOf(found, k);
+	}
+
+	/*
+	 * One bit per facing pair, for up to 64 pairs starting at fromA and fromB.
+	 */
+	private static long mismatched(long[] lowA, long[] highA, long[] lowB, long[] highB, int fromA, int fromB, int remaining) {
+		long low = window(lowA, fromA) ^ window(lowB, fromB);
+		long high = window(highA, fromA) ^ window(highB, fromB);
+		long word = ~(low & high);
+		return remaining < 64 ? word & ((1L << remaining) - 1) : word;
+	}
+
+	private static long window(long[] plane, int from) {
+		int w = from >>> 6, shift = from & 63;
+		long word = plane[w] >>> shift;
+		if(shift != 0) word |= plane[w + 1] << (64 - shift);
+		return word;
+	}
+
+	/*
+	 * One bit of each code of a strand, 64 bases to a word, with a spare word at the end so
+	 * that window never reads past the array.
+	 */
+	private static long[] plane(PackedStrand strand, int bit) {
+		int words = PackedStrand.wordsFor(strand.length);
+		long[] plane = new long[(words + 1) / 2 + 1];
+		for(int k = 0; k < words; k++) {
+			plane[k >>> 1] |= evenBits(strand.word(k) >>> bit) << ((k & 1) << 5);
+		}
+		return plane;
+	}
+
+	// gathers bits 0, 2, 4, ... 62 of a word into its low 32 bits
+	private static long evenBits(long word) {
+		word &= 0x5555555555555555L;
+		word = (word | word >>> 1) & 0x3333333333333333L;
+		word = (word | word >>> 2) & 0x0f0f0f0f0f0f0f0fL;
+		word = (word | word >>> 4) & 0x00ff00ff00ff00ffL;
+		word = (word | word >>> 8) & 0x0000ffff0000ffffL;
+		return (word | word >>> 16) & 0x00000000ffffffffL;
+	}
+}
@@ -0,0 +1,22 @@
+package given;
+
+/*
+ * The bases of a molecule and how its strands pair, read one base at a time, whatever the
+ * strands are kept in. RestrictionCuts and Drawing work over this, so that the molecules
+ * which keep their bases packed share one copy of the restriction and drawing rules.
+ */
+interface MoleculeBases {
+
+	int lengthA();
+
+	int lengthB();
+
+	// as in DNAMolecule.pairingOffset
+	int pairingOffset();
+
+	// strand A, 3 --> 5
+	char baseA(int index);
+
+	// strand B, 3 --> 5
+	char baseB(int index);
+}
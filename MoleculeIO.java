@@ -0,0 +1,106 @@
+package given;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+ * Binary format for molecules, about a quarter of a byte per base. All numbers are big
+ * endian (as written by DataOutputStream):
+ *
+ *   int   MAGIC ("DNAM")
+ *   int   VERSION
+ *   int   length of strand A
+ *   int   length of strand B
+ *   int   pairing offset (see DNAMolecule.pairingOffset), which is also the left
+ *         overhang: bases by which strand A sticks out at its three end (negative when
+ *         strand B sticks out instead)
+ *   int   right overhang: bases by which strand B sticks out at the five end of strand A
+ *         (negative when strand A sticks out instead)
+ *   int   reserved, 0
+ *   int   reserved, 0
+ *   long  strand A, 32 bases to a word as in PackedStrand (lowest bits first)
+ *   long  strand B, the same way
+ *
+ * Molecules may be written one after another to the same stream. Version 1 wrote the
+ * pairing offset a second time, as the left overhang, where version 2 has its first
+ * reserved int.
+ */
+public final class MoleculeIO {
+
+	static final int MAGIC = 0x444E414D;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 32;
+
+	private MoleculeIO() {}
+
+	public static void write(DNAMolecule molecule, OutputStream out) throws IOException {
+		write(molecule.pack(), out);
+	}
+
+	public static void write(PackedMolecule molecule, OutputStream out) throws IOException {
+		if(molecule.hasMismatches()) throw new IllegalArgumentException("mismatched pairs cannot be written");
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(molecule.strandA.length);
+		data.writeInt(molecule.strandB.length);
+		data.writeInt(molecule.offset);
+		data.writeInt(molecule.rightOverhang());
+		data.writeInt(0);
+		data.writeInt(0);
+		writeStrand(molecule.strandA, data);
+		writeStrand(molecule.strandB, data);
+		data.flush();
+	}
+
+	private static void writeStrand(PackedStrand strand, DataOutputStream data) throws IOException {
+		for(int k = 0, n = PackedStrand.wordsFor(strand.length); k < n; k++) {
+			data.writeLong(strand.word(k));
+		}
+	}
+
+	public static DNAMolecule read(InputStream in) throws IOException {
+		return readPacked(in).unpack();
+	}
+
+	/*
+	 * Reads one molecule. Nothing past it is consumed, so that the next one can be read
+	 * from the same stream (which should be buffered).
+	 */
+	public static PackedMolecule readPacked(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int magic = data.readInt();
+		int version = data.readInt();
+		int lenA = data.readInt();
+		int lenB = data.readInt();
+		int offset = data.readInt();
+		int right = data.readInt();
+		data.readInt();
+		data.readInt();
+		checkHeader(magic, version, lenA, lenB, offset, right);
+		PackedStrand strandA = readStrand(data, lenA);
+		PackedStrand strandB = readStrand(data, lenB);
+		return new PackedMolecule(strandA, strandB, offset);
+	}
+
+	private static PackedStrand readStrand(DataInputStream data, int length) throws IOException {
+		long[] words = new long[PackedStrand.wordsFor(length)];
+		for(int k = 0; k < words.length; k++) {
+			words[k] = data.readLong();
+		}
+		return new PackedStrand(words, 0, length);
+	}
+
+	static void checkHeader(int magic, int version, int lenA, int lenB, int offset, int right) {
+		if(magic != MAGIC) throw new IllegalArgumentException("not a serialized DNAMolecule");
+		if(version != VERSION) throw new IllegalArgumentException("unsupported version " + version);
+		if(lenA <= 0 || lenB <= 0 || offset <= -lenB || offset >= lenA)
+			throw new IllegalArgumentException("corrupt DNAMolecule header");
+		if(right != lenB - lenA + offset)
+			throw new IllegalArgumentException("corrupt DNAMolecule header");
+	}
+}
@@ -10,6 +10,32 @@ public class Nucleotide {
 	private Nucleotide prev, next;
 	public Nucleotide peer = null;
 	
+	// Index of the strand this nucleotide belongs to (null while it is on its own), and
+	// its position number within it. Kept current by append, so that the ends, the size
+	// and the position of any nucleotide can be found without walking the strand.
+	private Strand strand;
+	private int pos;
+	
+	private static final class Strand {
+		Nucleotide threeEnd, fiveEnd;
+		int length;
+		// position number of threeEnd; positions may wrap around, only differences matter
+		int base;
+		// packed copy of the strand, dropped whenever the strand changes
+		PackedStrand packed;
+		// the bases of the strand, once asked for, split and joined along with it (so
+		// positional access stays O(log n) across cuts and ligations)
+		RopeStrand rope;
+		
+		Strand(Nucleotide threeEnd, Nucleotide fiveEnd, int length, RopeStrand rope) {
+			this.threeEnd = threeEnd;
+			this.fiveEnd = fiveEnd;
+			this.length = length;
+			this.base = threeEnd.pos;
+			this.rope = rope;
+		}
+	}
+	
 	public Nucleotide(char base) {
 		switch(base) {
 		case 'A': case 'T': case 'C': case 'G': break;
@@ -20,25 +46,153 @@ public class Nucleotide {
 		this.next = null;
 	}
 	
+	/*
+	 * Links other right after this nucleotide (toward the five end). Whatever followed
+	 * this nucleotide, and whatever preceded other, is cut off into strands of its own.
+	 * Appending null just cuts the strand after this nucleotide.
+	 */
 	public void append(Nucleotide other) {
+		if(this.next == other && other != null) return;
 		if(this.next != null)
-			this.next.prev = null;
+			splitAfter();
 		if(other != null) {
 			if(other.prev != null)
-				other.prev.next = null;
-			other.prev = this;
+				other.prev.splitAfter();
+			if(other.getThree() == this.getThree())
+				throw new IllegalArgumentException("would make a circular strand");
+			join(other);
+		}
+	}
+	
+	/*
+	 * Cuts the link after this nucleotide, moving the smaller of the two halves to a new
+	 * strand index (so repeated cuts stay cheap).
+	 */
+	private void splitAfter() {
+		Strand s = strand;
+		Nucleotide first = next;
+		int left = pos - s.base + 1;
+		int right = s.length - left;
+		next.prev = null;
+		next = null;
+		s.packed = null;
+		RopeStrand[] ropes = s.rope == null ? new RopeStrand[2] : s.rope.split(left);
+		if(right <= left) {
+			relabel(first, right == 1 ? null : new Strand(first, s.fiveEnd, right, ropes[1]));
+			s.fiveEnd = this;
+			s.length = left;
+			s.rope = ropes[0];
+			if(left == 1) strand = null;
+		} else {
+			relabel(s.threeEnd, left == 1 ? null : new Strand(s.threeEnd, this, left, ropes[0]));
+			s.threeEnd = first;
+			s.base = first.pos;
+			s.length = right;
+			s.rope = ropes[1];
 		}
+	}
+	
+	private static void relabel(Nucleotide from, Strand to) {
+		for(Nucleotide now = from; now != null; now = now.next) now.strand = to;
+	}
+	
+	/*
+	 * Links two separate strands (this is a five end, other a three end), renumbering
+	 * the smaller one into the index of the larger one.
+	 */
+	private void join(Nucleotide other) {
+		int leftSize = getSize(), rightSize = other.getSize();
+		RopeStrand rope = joinRopes(this, other);
 		this.next = other;
+		other.prev = this;
+		if(leftSize >= rightSize) {
+			if(strand == null) {
+				pos = 0;
+				strand = new Strand(this, this, 1, null);
+			}
+			Strand s = strand;
+			int p = pos;
+			Nucleotide now = other;
+			while(true) {
+				now.strand = s;
+				now.pos = ++p;
+				if(now.next == null) break;
+				now = now.next;
+			}
+			s.fiveEnd = now;
+			s.length += rightSize;
+			s.packed = null;
+			s.rope = rope;
+		} else {
+			Strand s = other.strand;
+			int p = other.pos;
+			Nucleotide now = this;
+			while(true) {
+				now.strand = s;
+				now.pos = --p;
+				if(now.prev == null) break;
+				now = now.prev;
+			}
+			s.threeEnd = now;
+			s.base = p;
+			s.length += leftSize;
+			s.packed = null;
+			s.rope = rope;
+		}
+	}
+	
+	/*
+	 * The rope of the two strands joined, or null unless both have one (a nucleotide on
+	 * its own counts as a rope of one base when joined to a strand which has one).
+	 */
+	private static RopeStrand joinRopes(Nucleotide left, Nucleotide right) {
+		RopeStrand leftRope = left.strand == null ? null : left.strand.rope;
+		RopeStrand rightRope = right.strand == null ? null : right.strand.rope;
+		if(leftRope == null && rightRope == null) return null;
+		if(leftRope == null && left.strand == null) leftRope = new RopeStrand(String.valueOf(left.base));
+		if(rightRope == null && right.strand == null) rightRope = new RopeStrand(String.valueOf(right.base));
+		if(leftRope == null || rightRope == null) return null;
+		return leftRope.concat(rightRope);
+	}
+	
+	/*
+	 * Packed copy of the strand this nucleotide belongs to, if one has been made since the
+	 * strand last changed (null otherwise).
+	 */
+	PackedStrand getPackedStrand() {
+		if(strand == null) return null;
+		return strand.packed;
+	}
+	
+	void setPackedStrand(PackedStrand packed) {
+		if(strand != null) strand.packed = packed;
+	}
+	
+	/*
+	 * Rope of the strand this nucleotide belongs to, if one has been made (null otherwise).
+	 * Unlike the packed copy, it is kept up to date when the strand is cut or joined.
+	 */
+	RopeStrand getRope() {
+		if(strand == null) return null;
+		return strand.rope;
+	}
+	
+	void setRope(RopeStrand rope) {
+		if(strand != null) strand.rope = rope;
+	}
+	
+	public char getBase() {
+		return base;
 	}
 	
 	public Nucleotide getThree() {
-		if(prev == null) return this;
-		return prev.getThree();
+		if(strand == null) return this;
+		return strand.threeEnd;
 	}
 	
 	public Nucleotide getFive() {
-		if(next == null) return this;
-		return next.getFive();
+		if(strand == null) return this;
+		return strand.fiveEnd;
 	}
 	
 	public Nucleotide getNext() {
@@ -110,18 +264,22 @@ public class Nucleotide {
 		return nowComplement;
 	}
 	
+	/*
+	 * Number of nucleotides before this one, i.e. its position counted from the three end.
+	 */
 	public int getSizeLeft() {
-		if(prev == null) return 0;
-		return 1 + prev.getSizeLeft();
+		if(strand == null) return 0;
+		return pos - strand.base;
 	}
 	
 	public int getSizeRight() {
-		if(next == null) return 0;
-		return 1 + next.getSizeRight();
+		if(strand == null) return 0;
+		return strand.length - 1 - getSizeLeft();
 	}
 	
 	public int getSize() {
-		return 1 + getSizeLeft() + getSizeRight();
+		if(strand == null) return 1;
+		return strand.length;
 	}
 	
 	public String toString(){
@@ -142,6 +300,8 @@ public class Nucleotide {
 	
 	public static int countInterval(Nucleotide begin, Nucleotide end) {
 		if(begin == end) return 1;
-		return countInterval(begin.getNext(), end) + 1;
+		if(begin.strand == null || begin.strand != end.strand || end.getSizeLeft() < begin.getSizeLeft())
+			throw new IllegalArgumentException("end does not follow begin");
+		return end.getSizeLeft() - begin.getSizeLeft() + 1;
 	}
 }
@@ -0,0 +1,291 @@
+package given;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/*
+ * A molecule whose bases are kept in native memory, outside the Java heap, packed as in
+ * PackedStrand (32 bases to a word). However much DNA is loaded this way, the heap only
+ * holds a few small objects per molecule, so it stays small and collections stay short.
+ *
+ * The memory is held by direct buffers, which the collector frees along with them. Closing
+ * a molecule (use try-with-resources) lets go of its memory at once, so that it no longer
+ * waits on the molecule itself becoming unreachable; a closed molecule throws
+ * IllegalStateException. A piece cut off by restrictionCut, and a duplicate, get memory
+ * of their own and should be closed too. A molecule is not safe for use by several
+ * threads at once.
+ */
+public final class OffHeapMolecule implements MoleculeBases, AutoCloseable {
+
+	// off-heap molecules are always fully paired
+	private static final int[] NO_MISMATCHES = new int[0];
+
+	private Strand strandA;
+	private Strand strandB;
+	// as in PackedMolecule
+	private int offset;
+	private boolean closed = false;
+
+	private OffHeapMolecule(Strand strandA, Strand strandB, int offset) {
+		this.strandA = strandA;
+		this.strandB = strandB;
+		this.offset = offset;
+	}
+
+	/*
+	 * Same as new PackedMolecule(sequence), in native memory.
+	 */
+	public OffHeapMolecule(String sequence) {
+		PackedStrand packed = new PackedStrand(sequence);
+		strandA = Strand.copyOf(packed);
+		strandB = Strand.copyOf(packed.reverseComplement());
+		offset = 0;
+	}
+
+	/*
+	 * Copies two strands into native memory and zips them up (see zipUp).
+	 */
+	public OffHeapMolecule(PackedStrand strandA, PackedStrand strandB) {
+		this.strandA = Strand.copyOf(strandA);
+		this.strandB = Strand.copyOf(strandB);
+		if(!zipUp()) {
+			close();
+			throw new IllegalArgumentException("unable to zipUp");
+		}
+	}
+
+	/*
+	 * Copies a molecule into native memory, keeping its pairing.
+	 */
+	public OffHeapMolecule(PackedMolecule molecule) {
+		this(Strand.copyOf(fullyPaired(molecule).strandA), Strand.copyOf(molecule.strandB), molecule.offset);
+	}
+
+	// checked before any memory is allocated for the copy
+	private static PackedMolecule fullyPaired(PackedMolecule molecule) {
+		if(molecule.hasMismatches()) throw new IllegalArgumentException("mismatched pairs cannot be moved off the heap");
+		return molecule;
+	}
+
+	private void checkOpen() {
+		if(closed) throw new IllegalStateException("closed OffHeapMolecule");
+	}
+
+	public int lengthA() {
+		checkOpen();
+		return strandA.length;
+	}
+
+	public int lengthB() {
+		checkOpen();
+		return strandB.length;
+	}
+
+	public int pairingOffset() {
+		checkOpen();
+		return offset;
+	}
+
+	public char baseA(int index) {
+		checkOpen();
+		return strandA.charAt(index);
+	}
+
+	public char baseB(int index) {
+		checkOpen();
+		return strandB.charAt(index);
+	}
+
+	/*
+	 * Same contract as DNAMolecule.zipUp, reading the strands where they are.
+	 */
+	public boolean zipUp() {
+		checkOpen();
+		final Strand reversed = strandB;
+		int found = DNAMolecule.findZipOffset(strandA, new CharSequence() {
+			public int length() {
+				return reversed.length;
+			}
+
+			public char charAt(int index) {
+				return reversed.charAt(reversed.length - 1 - index);
+			}
+
+			public CharSequence subSequence(int from, int to) {
+				return toString().subSequence(from, to);
+			}
+
+			public String toString() {
+				return new StringBuilder(reversed).reverse().toString();
+			}
+		});
+		if(found == DNAMolecule.NO_OFFSET) return false;
+		offset = found;
+		return true;
+	}
+
+	/*
+	 * Same contract as DNAMolecule.duplicate, except that both molecules keep both strands
+	 * (the copy gets its own memory; its strands are base for base the same).
+	 */
+	public OffHeapMolecule duplicate() {
+		checkOpen();
+		return new OffHeapMolecule(strandA.copy(0, strandA.length), strandB.copy(0, strandB.length), offset);
+	}
+
+	public OffHeapMolecule flip() {
+		checkOpen();
+		int flipped = strandB.length - strandA.length + offset;
+		Strand tmp = strandA;
+		strandA = strandB;
+		strandB = tmp;
+		offset = flipped;
+		return this;
+	}
+
+	/*
+	 * Same contract as PackedMolecule.restrictionCut. This molecule keeps the left part in
+	 * its own memory; the right part is copied out into memory of its own.
+	 */
+	public OffHeapMolecule restrictionCut(String sequence) {
+		checkOpen();
+		int site = RestrictionCuts.firstSite(this, sequence);
+		if(site == RestrictionCuts.NO_SITE) return null;
+		return site >= 0 ? cutAtA(site, sequence.length()) : cutAtB(~site, sequence.length());
+	}
+
+	// the same cuts as PackedMolecule.tryCutAtA and tryCutAtB, at a site which can be cut
+	private OffHeapMolecule cutAtA(int pos, int len) {
+		int lenA = strandA.length, lenB = strandB.length;
+		int posPeer = RestrictionCuts.peer(this, pos);
+		OffHeapMolecule right = new OffHeapMolecule(strandA.copy(pos + len, lenA), strandB.copy(0, posPeer + 1), -len);
+		strandA = strandA.view(0, pos + len);
+		strandB = strandB.view(posPeer + 1, lenB);
+		return right;
+	}
+
+	private OffHeapMolecule cutAtB(int pos, int len) {
+		int lenA = strandA.length, lenB = strandB.length;
+		int posPeer = RestrictionCuts.peer(this, pos);
+		OffHeapMolecule right = new OffHeapMolecule(strandA.copy(posPeer + 1, lenA), strandB.copy(0, pos + len), -len);
+		strandA = strandA.view(0, posPeer + 1);
+		strandB = strandB.view(pos + len, lenB);
+		return right;
+	}
+
+	/*
+	 * Copies this molecule onto the heap.
+	 */
+	public PackedMolecule toPacked() {
+		checkOpen();
+		return new PackedMolecule(strandA.toPacked(), strandB.toPacked(), offset);
+	}
+
+	/*
+	 * Same drawing as DNAMolecule.toString.
+	 */
+	public String toString() {
+		checkOpen();
+		return Drawing.toString(this, NO_MISMATCHES);
+	}
+
+	/*
+	 * Same contract as DNAMolecule.render.
+	 */
+	public void render(Appendable out) throws IOException {
+		checkOpen();
+		new Drawing(out).molecule(this, NO_MISMATCHES);
+	}
+
+	/*
+	 * Lets go of the native memory of this molecule. Closing it again does nothing.
+	 */
+	public void close() {
+		closed = true;
+		strandA = strandB = null;
+	}
+
+	/*
+	 * A run of bases in a block of native memory, laid out as the words of a PackedStrand.
+	 * Views (after a cut) share the block of the strand they come from.
+	 */
+	private static final class Strand implements CharSequence {
+		final ByteBuffer memory;
+		final LongBuffer words;
+		final int start;
+		final int length;
+
+		private Strand(ByteBuffer memory, int start, int length) {
+			this.memory = memory;
+			this.words = memory.asLongBuffer();
+			this.start = start;
+			this.length = length;
+		}
+
+		private static Strand allocate(int length) {
+			ByteBuffer memory = ByteBuffer.allocateDirect(8 * PackedStrand.wordsFor(length)).order(ByteOrder.nativeOrder());
+			return new Strand(memory, 0, length);
+		}
+
+		static Strand copyOf(PackedStrand strand) {
+			Strand copy = allocate(strand.length);
+			for(int k = 0, n = PackedStrand.wordsFor(strand.length); k < n; k++) copy.words.put(k, strand.word(k));
+			return copy;
+		}
+
+		int code(int index) {
+			int i = start + index;
+			return (int) (words.get(i >>> 5) >>> ((i & 31) << 1)) & 3;
+		}
+
+		// bases [32 * k, 32 * k + 32), as PackedStrand.word
+		long word(int k) {
+			int i = start + (k << 5);
+			int w = i >>> 5, shift = (i & 31) << 1;
+			long word = words.get(w) >>> shift;
+			if(shift != 0 && w + 1 < words.limit()) word |= words.get(w + 1) << (64 - shift);
+			int remaining = length - (k << 5);
+			if(remaining < PackedStrand.BASES_PER_WORD) word &= (1L << (remaining << 1)) - 1;
+			return word;
+		}
+
+		Strand view(int from, int to) {
+			return new Strand(memory, start + from, to - from);
+		}
+
+		// bases [from, to) in a block of their own
+		Strand copy(int from, int to) {
+			Strand part = view(from, to);
+			Strand copy = allocate(to - from);
+			for(int k = 0, n = PackedStrand.wordsFor(to - from); k < n; k++) copy.words.put(k, part.word(k));
+			return copy;
+		}
+
+		PackedStrand toPacked() {
+			long[] packed = new long[PackedStrand.wordsFor(length)];
+			for(int k = 0; k < packed.length; k++) packed[k] = word(k);
+			return new PackedStrand(packed, 0, length);
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public char charAt(int index) {
+			if(index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+			return PackedStrand.base(code(index));
+		}
+
+		public CharSequence subSequence(int from, int to) {
+			return toString().subSequence(from, to);
+		}
+
+		public String toString() {
+			StringBuilder sb = new StringBuilder(length);
+			for(int i = 0; i < length; i++) sb.append(PackedStrand.base(code(i)));
+			return sb.toString();
+		}
+	}
+}
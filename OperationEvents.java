@@ -0,0 +1,160 @@
+package given;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import given.OperationStats.Operation;
+
+/*
+ * JDK Flight Recorder events for the operations counted by OperationStats, one type per
+ * operation, with its input sizes, its work and its outcome. An operation creates its
+ * event when it starts and finishes it when it is done, which also records it in
+ * OperationStats:
+ *
+ *   OperationEvents.ZipUp event = new OperationEvents.ZipUp();
+ *   event.start();
+ *   ...
+ *   event.finish(lengthA, lengthB, examined, zipped);
+ *
+ * While JFR is not recording, begin and commit do nothing and the JIT does away with the
+ * event object, so an operation only pays for OperationStats.
+ */
+final class OperationEvents {
+
+	private OperationEvents() {}
+
+	abstract static class OperationEvent extends Event {
+		// for OperationStats; transient fields are not recorded
+		private transient long started;
+
+		void start() {
+			begin();
+			started = OperationStats.start();
+		}
+
+		void finish(Operation operation, long work) {
+			OperationStats.record(operation, started, work);
+			if(shouldCommit()) commit();
+		}
+	}
+
+	@Name("given.ZipUp")
+	@Label("Zip Up")
+	@Category("DNA")
+	@Description("DNAMolecule.zipUp: finding the least ragged pairing of two strands")
+	static final class ZipUp extends OperationEvent {
+		@Label("Length of Strand A")
+		int lengthA;
+		@Label("Length of Strand B")
+		int lengthB;
+		@Label("Offsets Examined")
+		long offsetsExamined;
+		@Label("Zipped")
+		boolean zipped;
+
+		void finish(int lengthA, int lengthB, long offsetsExamined, boolean zipped) {
+			this.lengthA = lengthA;
+			this.lengthB = lengthB;
+			this.offsetsExamined = offsetsExamined;
+			this.zipped = zipped;
+			finish(Operation.ZIP_UP, offsetsExamined);
+		}
+	}
+
+	@Name("given.Duplicate")
+	@Label("Duplicate")
+	@Category("DNA")
+	@Description("DNAMolecule.duplicate")
+	static final class Duplicate extends OperationEvent {
+		@Label("Length of Strand A")
+		int lengthA;
+		@Label("Length of Strand B")
+		int lengthB;
+		@Label("Bases Packed")
+		int basesPacked;
+
+		void finish(int lengthA, int lengthB, int basesPacked) {
+			this.lengthA = lengthA;
+			this.lengthB = lengthB;
+			this.basesPacked = basesPacked;
+			finish(Operation.DUPLICATE, basesPacked);
+		}
+	}
+
+	@Name("given.Materialize")
+	@Label("Materialize")
+	@Category("DNA")
+	@Description("DNAStrand.materialize: building the Nucleotides of a strand made by duplicate")
+	static final class Materialize extends OperationEvent {
+		@Label("Nucleotides Built")
+		int nucleotidesBuilt;
+
+		void finish(int nucleotidesBuilt) {
+			this.nucleotidesBuilt = nucleotidesBuilt;
+			finish(Operation.MATERIALIZE, nucleotidesBuilt);
+		}
+	}
+
+	@Name("given.RestrictionCut")
+	@Label("Restriction Cut")
+	@Category("DNA")
+	@Description("DNAMolecule.restrictionCut")
+	static final class RestrictionCut extends OperationEvent {
+		@Label("Length of Strand A")
+		int lengthA;
+		@Label("Site Length")
+		int siteLength;
+		// counted by the scan as it goes
+		@Label("Positions Examined")
+		long positionsExamined;
+		@Label("Cut")
+		boolean cut;
+
+		void finish(int lengthA, int siteLength, boolean cut) {
+			this.lengthA = lengthA;
+			this.siteLength = siteLength;
+			this.cut = cut;
+			finish(Operation.RESTRICTION_CUT, positionsExamined);
+		}
+	}
+
+	@Name("given.Combine")
+	@Label("Combine")
+	@Category("DNA")
+	@Description("DNAMolecule.tryToCombineWith")
+	static final class Combine extends OperationEvent {
+		@Label("Length of Strand A")
+		int lengthA;
+		@Label("Length of Other Strand A")
+		int otherLengthA;
+		// counted by the overhang checks as they go
+		@Label("Overhang Bases Compared")
+		long basesCompared;
+		@Label("Combined")
+		boolean combined;
+
+		void finish(int lengthA, int otherLengthA, boolean combined) {
+			this.lengthA = lengthA;
+			this.otherLengthA = otherLengthA;
+			this.combined = combined;
+			finish(Operation.COMBINE, basesCompared);
+		}
+	}
+
+	@Name("given.Complement")
+	@Label("Complement")
+	@Category("DNA")
+	@Description("DNAStrand.getComplementStrand")
+	static final class Complement extends OperationEvent {
+		@Label("Length")
+		int length;
+
+		void finish(int length) {
+			this.length = length;
+			finish(Operation.COMPLEMENT, length);
+		}
+	}
+}
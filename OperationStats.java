@@ -0,0 +1,166 @@
+package given;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * In-process statistics on the main operations of DNAMolecule and DNAStrand: how many
+ * times each ran, how long they took (as a histogram of powers of two nanoseconds), and
+ * how much work they did (see Operation). Off until enable is called; while off, an
+ * operation pays one read of a volatile flag.
+ *
+ * The same operations also emit JDK Flight Recorder events (see OperationEvents), which
+ * JFR switches on and off by itself.
+ */
+public final class OperationStats {
+
+	public enum Operation {
+		// work: offsets whose overlap was checked
+		ZIP_UP,
+		// work: bases packed for strands which had no packed copy yet (Nucleotides are
+		// only built when the copy is changed, see MATERIALIZE)
+		DUPLICATE,
+		// work: Nucleotides built for strands made by duplicate
+		MATERIALIZE,
+		// work: positions of the paired region checked for the site (on both strands)
+		RESTRICTION_CUT,
+		// work: bases of the overhangs compared while looking for a way to join
+		COMBINE,
+		// work: bases complemented
+		COMPLEMENT
+	}
+
+	// latencies of [2^k, 2^(k + 1)) nanoseconds are counted in bucket k (0 and 1 in bucket 0)
+	static final int BUCKETS = 64;
+
+	private static volatile boolean enabled = false;
+
+	private static final Counters[] counters = new Counters[Operation.values().length];
+
+	static {
+		for(int i = 0; i < counters.length; i++) counters[i] = new Counters();
+	}
+
+	private static final class Counters {
+		final LongAdder count = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder work = new LongAdder();
+		final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+		Counters() {
+			for(int i = 0; i < BUCKETS; i++) histogram[i] = new LongAdder();
+		}
+	}
+
+	private OperationStats() {}
+
+	public static void enable() {
+		enabled = true;
+	}
+
+	public static void disable() {
+		enabled = false;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/*
+	 * Clears every counter (whether enabled or not).
+	 */
+	public static void reset() {
+		for(Counters c : counters) {
+			c.count.reset();
+			c.nanos.reset();
+			c.work.reset();
+			for(LongAdder bucket : c.histogram) bucket.reset();
+		}
+	}
+
+	/*
+	 * When an operation starts, or 0 if statistics are off (see record).
+	 */
+	static long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	static void record(Operation operation, long start, long work) {
+		if(start == 0L || !enabled) return;
+		long nanos = Math.max(0L, System.nanoTime() - start);
+		Counters c = counters[operation.ordinal()];
+		c.count.increment();
+		c.nanos.add(nanos);
+		c.work.add(work);
+		c.histogram[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+	}
+
+	/*
+	 * The counters of one operation as they are now. Operations running at the same time
+	 * may be partly counted.
+	 */
+	public static Snapshot snapshot(Operation operation) {
+		Counters c = counters[operation.ordinal()];
+		long[] histogram = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) histogram[i] = c.histogram[i].sum();
+		return new Snapshot(operation, c.count.sum(), c.nanos.sum(), c.work.sum(), histogram);
+	}
+
+	public static Map<Operation, Snapshot> snapshot() {
+		Map<Operation, Snapshot> all = new EnumMap<Operation, Snapshot>(Operation.class);
+		for(Operation operation : Operation.values()) all.put(operation, snapshot(operation));
+		return all;
+	}
+
+	public static final class Snapshot {
+		public final Operation operation;
+		public final long count;
+		public final long totalNanos;
+		public final long work;
+		// see BUCKETS
+		private final long[] histogram;
+
+		Snapshot(Operation operation, long count, long totalNanos, long work, long[] histogram) {
+			this.operation = operation;
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.work = work;
+			this.histogram = histogram;
+		}
+
+		/*
+		 * How many operations took [2^bucket, 2^(bucket + 1)) nanoseconds.
+		 */
+		public long histogram(int bucket) {
+			return histogram[bucket];
+		}
+
+		public double meanNanos() {
+			return count == 0 ? 0.0 : (double) totalNanos / count;
+		}
+
+		/*
+		 * An upper bound (within a factor of two) on the given quantile of the latencies,
+		 * in nanoseconds: percentileNanos(0.99) for the 99th percentile.
+		 */
+		public long percentileNanos(double quantile) {
+			if(!(quantile >= 0.0 && quantile <= 1.0)) throw new IllegalArgumentException("quantile must be in [0, 1]");
+			long total = 0;
+			for(long n : histogram) total += n;
+			if(total == 0) return 0;
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for(int i = 0; i < BUCKETS - 1; i++) {
+				seen += histogram[i];
+				if(seen >= rank) return (1L << (i + 1)) - 1;
+			}
+			return Long.MAX_VALUE;
+		}
+
+		public String toString() {
+			return operation + ": " + count + " calls, mean " + Math.round(meanNanos()) + " ns, p99 < "
+					+ percentileNanos(0.99) + " ns, work " + work;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package given;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Simulates PCR: every cycle, each molecule of the pool is duplicated (see
+ * DNAMolecule.duplicate), and both it and its copy go on to the next cycle. A duplication
+ * may fail, with probability 1 - efficiency, in which case the molecule goes on alone.
+ *
+ * The duplications of a cycle are spread over a ForkJoinPool. Each task duplicates its own
+ * run of the pool into a list of its own, so threads never share a molecule or a list,
+ * and the lists are only joined at the end of the cycle. Failures are drawn from the seed,
+ * the cycle and the position of the molecule in the pool, so a run gives the same pool
+ * however many threads it had.
+ */
+public final class PCR {
+
+	// Below this many molecules a task duplicates them itself instead of splitting.
+	private static final int LEAF_SIZE = 256;
+
+	private final int cycles;
+	private final double efficiency;
+	private final long seed;
+	private final ForkJoinPool pool;
+
+	/*
+	 * Every duplication succeeds, on the common pool.
+	 */
+	public PCR(int cycles) {
+		this(cycles, 1.0, 0L, ForkJoinPool.commonPool());
+	}
+
+	public PCR(int cycles, double efficiency, long seed) {
+		this(cycles, efficiency, seed, ForkJoinPool.commonPool());
+	}
+
+	public PCR(int cycles, double efficiency, long seed, ForkJoinPool pool) {
+		if(cycles < 0) throw new IllegalArgumentException("negative cycle count");
+		if(!(efficiency >= 0.0 && efficiency <= 1.0)) throw new IllegalArgumentException("efficiency must be in [0, 1]");
+		if(pool == null) throw new NullPointerException();
+		this.cycles = cycles;
+		this.efficiency = efficiency;
+		this.seed = seed;
+		this.pool = pool;
+	}
+
+	/*
+	 * Amplifies the given templates, which are changed (each one keeps its strand A and
+	 * gets a new strand B) and are part of the resulting pool.
+	 */
+	public Result run(Collection<DNAMolecule> templates) {
+		List<DNAMolecule> molecules = new ArrayList<DNAMolecule>(templates);
+		List<CycleStats> stats = new ArrayList<CycleStats>(cycles);
+		for(int cycle = 1; cycle <= cycles; cycle++) {
+			long begin = System.nanoTime();
+			int before = molecules.size();
+			List<DNAMolecule> copies = pool.invoke(new Duplicate(molecules, cycle, 0, before));
+			molecules.addAll(copies);
+			stats.add(new CycleStats(cycle, before, copies.size(), System.nanoTime() - begin));
+		}
+		return new Result(molecules, stats);
+	}
+
+	private final class Duplicate extends RecursiveTask<List<DNAMolecule>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<DNAMolecule> molecules;
+		private final int cycle, from, to;
+
+		Duplicate(List<DNAMolecule> molecules, int cycle, int from, int to) {
+			this.molecules = molecules;
+			this.cycle = cycle;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected List<DNAMolecule> compute() {
+			if(to - from <= LEAF_SIZE) {
+				List<DNAMolecule> copies = new ArrayList<DNAMolecule>(to - from);
+				for(int i = from; i < to; i++) {
+					if(succeeds(cycle, i)) copies.add(molecules.get(i).duplicate());
+				}
+				return copies;
+			}
+			int middle = (from + to) >>> 1;
+			Duplicate left = new Duplicate(molecules, cycle, from, middle);
+			left.fork();
+			List<DNAMolecule> copies = new Duplicate(molecules, cycle, middle, to).compute();
+			List<DNAMolecule> leftCopies = left.join();
+			leftCopies.addAll(copies);
+			return leftCopies;
+		}
+	}
+
+	private boolean succeeds(int cycle, int index) {
+		if(efficiency >= 1.0) return true;
+		// SplitMix64 finalizer over (seed, cycle, index), top 53 bits as a double in [0, 1)
+		long z = seed + 0x9E3779B97F4A7C15L * (((long) cycle << 32) + index + 1);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+		return (z >>> 11) * 0x1.0p-53 < efficiency;
+	}
+
+	/*
+	 * What happened during one cycle.
+	 */
+	public static final class CycleStats {
+		public final int cycle;
+		// molecules at the start of the cycle
+		public final int templates;
+		// successful duplications (templates - copies of them failed)
+		public final int copies;
+		public final long nanos;
+
+		CycleStats(int cycle, int templates, int copies, long nanos) {
+			this.cycle = cycle;
+			this.templates = templates;
+			this.copies = copies;
+			this.nanos = nanos;
+		}
+
+		public int failures() {
+			return templates - copies;
+		}
+
+		public int molecules() {
+			return templates + copies;
+		}
+
+		public String toString() {
+			return "cycle " + cycle + ": " + templates + " -> " + molecules() + " (" + failures() + " failed, "
+					+ (nanos / 1000000) + " ms)";
+		}
+	}
+
+	public static final class Result {
+		private final List<DNAMolecule> molecules;
+		private final List<CycleStats> cycles;
+
+		Result(List<DNAMolecule> molecules, List<CycleStats> cycles) {
+			this.molecules = Collections.unmodifiableList(molecules);
+			this.cycles = Collections.unmodifiableList(cycles);
+		}
+
+		public List<DNAMolecule> molecules() {
+			return molecules;
+		}
+
+		public List<CycleStats> cycles() {
+			return cycles;
+		}
+	}
+}
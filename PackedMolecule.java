@@ -0,0 +1,432 @@
+package given;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class PackedMolecule implements MoleculeBases {
+
+	public PackedStrand strandA;
+	public PackedStrand strandB;
+	// Pairing, as in DNAMolecule.pairingOffset(): base i of strand A faces base (i - offset)
+	// of strand B read 5 --> 3, and every facing pair in the overlap is paired but those
+	// in mismatches.
+	int offset;
+	// Positions in strand A of the facing pairs left unpaired by zipUp(int), in increasing
+	// order. Never changed in place, so molecules may share it.
+	private int[] mismatches = NO_MISMATCHES;
+	private static final int[] NO_MISMATCHES = new int[0];
+	// Set by buildIndex; it covers the strands (and their views) it was built over,
+	// whatever is cut from or flipped in this molecule.
+	private FMIndex index;
+
+	/*
+	 * Constructs a new packed molecule which has the given sequence as one of its strands,
+	 * and its complement as the other. The result is known to be perfectly zipped, so
+	 * there is no need to search for the offset.
+	 */
+	public PackedMolecule(String sequence) {
+		strandA = new PackedStrand(sequence);
+		strandB = strandA.reverseComplement();
+		offset = 0;
+	}
+
+	/*
+	 * Constructs a new packed molecule from two strands (should call zipUp)
+	 */
+	public PackedMolecule(PackedStrand strandA, PackedStrand strandB) {
+		this.strandA = strandA;
+		this.strandB = strandB;
+		if(!zipUp()) {
+			throw new IllegalArgumentException("unable to zipUp");
+		}
+	}
+
+	/*
+	 * Packs an existing molecule, keeping its pairing.
+	 */
+	public PackedMolecule(DNAMolecule molecule) {
+		this(molecule.strandA.pack(), molecule.strandB.pack(), molecule.pairingOffset());
+	}
+
+	PackedMolecule(PackedStrand strandA, PackedStrand strandB, int offset) {
+		this.strandA = strandA;
+		this.strandB = strandB;
+		this.offset = offset;
+	}
+
+	/*
+	 * Anneals two strands which need not be fully complementary (see zipUp(int)).
+	 */
+	public static PackedMolecule anneal(PackedStrand strandA, PackedStrand strandB, int maxMismatches) {
+		PackedMolecule molecule = new PackedMolecule(strandA, strandB, 0);
+		if(!molecule.zipUp(maxMismatches)) {
+			throw new IllegalArgumentException("unable to zipUp");
+		}
+		return molecule;
+	}
+
+	/*
+	 * Expands this molecule back into linked Nucleotides, with every pair connected.
+	 * Nucleotides have no way to leave a pair in the middle of a molecule unpaired, so a
+	 * molecule with mismatches cannot be unpacked.
+	 */
+	public DNAMolecule unpack() {
+		if(hasMismatches()) throw new IllegalStateException("mismatched pairs cannot be unpacked");
+		return new DNAMolecule(strandA.toStrand(), strandB.toStrand(), offset);
+	}
+
+	/*
+	 * Same contract as DNAMolecule.zipUp: picks the least ragged alignment.
+	 */
+	public boolean zipUp() {
+		int found = DNAMolecule.findZipOffset(strandA, strandB.reverse());
+		if(found == DNAMolecule.NO_OFFSET) return false;
+		offset = found;
+		mismatches = NO_MISMATCHES;
+		return true;
+	}
+
+	/*
+	 * zipUp for strands which only mostly complement each other, as primers and probes
+	 * anneal: picks the longest overlap with at most maxMismatches facing pairs which are
+	 * not complementary, and leaves those unpaired (see mismatches). With no mismatches
+	 * allowed it picks the same alignment as zipUp().
+	 */
+	public boolean zipUp(int maxMismatches) {
+		if(maxMismatches < 0) throw new IllegalArgumentException("negative number of mismatches");
+		PackedStrand reversed = strandB.reverse();
+		int found = MismatchZip.findZipOffset(strandA, reversed, maxMismatches);
+		if(found == DNAMolecule.NO_OFFSET) return false;
+		offset = found;
+		mismatches = maxMismatches == 0 ? NO_MISMATCHES : MismatchZip.mismatches(strandA, reversed, found);
+		if(mismatches.length == 0) mismatches = NO_MISMATCHES;
+		return true;
+	}
+
+	/*
+	 * Positions in strand A of the facing pairs of the overlap which are left unpaired.
+	 */
+	public int[] mismatches() {
+		return mismatches.clone();
+	}
+
+	public boolean hasMismatches() {
+		return mismatches.length > 0;
+	}
+
+	/*
+	 * The mismatches of a molecule this one was cut from, whose strand A started shift
+	 * bases before this one's: those which are still facing pairs.
+	 */
+	private int[] mismatchesFrom(int[] all, int shift) {
+		int from = lowerBound(all, pairedBegin() + shift), to = lowerBound(all, pairedEnd() + shift);
+		if(from == to) return NO_MISMATCHES;
+		int[] kept = Arrays.copyOfRange(all, from, to);
+		for(int k = 0; k < kept.length; k++) kept[k] -= shift;
+		return kept;
+	}
+
+	private static int lowerBound(int[] sorted, int key) {
+		int i = Arrays.binarySearch(sorted, key);
+		return i < 0 ? -i - 1 : i;
+	}
+
+	// Bounds of the paired region, as positions in strand A.
+	int pairedBegin() {
+		return Math.max(0, offset);
+	}
+
+	int pairedEnd() {
+		return Math.min(strandA.length, strandB.length + offset);
+	}
+
+	// Position in strand B (3 --> 5) of the base paired with position i of strand A.
+	int peerOfA(int i) {
+		return strandB.length - 1 - i + offset;
+	}
+
+	// Position in strand A of the base paired with position j of strand B.
+	int peerOfB(int j) {
+		return strandB.length - 1 - j + offset;
+	}
+
+	/*
+	 * How far strand B sticks out past strand A at the five end of A (negative when A
+	 * sticks out instead). Two molecules can only be joined left to right when this
+	 * equals the offset of the right molecule.
+	 */
+	int rightOverhang() {
+		return strandB.length - strandA.length + offset;
+	}
+
+	/*
+	 * Same contract as DNAMolecule.duplicate. Packed strands never change, so the strand
+	 * synthesized against each template is base for base the strand it replaces, and the
+	 * two molecules can share it. Strands in a StrandArena are copied out of it first, so
+	 * that the duplicate outlives a reset of the arena.
+	 */
+	public PackedMolecule duplicate() {
+		strandA = strandA.detached();
+		strandB = strandB.detached();
+		PackedMolecule copy = new PackedMolecule(strandA, strandB, offset);
+		copy.index = index;
+		copy.mismatches = mismatches;
+		return copy;
+	}
+
+	/*
+	 * Builds an FMIndex over both strands, after which restrictionCut (on this molecule and
+	 * on the pieces cut from it) goes straight to the sites instead of scanning. Worth it
+	 * when many sites are looked for in the same long molecule.
+	 */
+	public FMIndex buildIndex() {
+		index = new FMIndex(strandA, strandB);
+		return index;
+	}
+
+	public PackedMolecule flip() {
+		if(hasMismatches()) {
+			int[] peers = new int[mismatches.length];
+			for(int k = 0; k < peers.length; k++) peers[k] = peerOfA(mismatches[mismatches.length - 1 - k]);
+			mismatches = peers;
+		}
+		int flipped = rightOverhang();
+		PackedStrand tmp = this.strandA;
+		this.strandA = this.strandB;
+		this.strandB = tmp;
+		this.offset = flipped;
+		return this;
+	}
+
+	/*
+	 * Same contract as DNAMolecule.tryToCombineWith. Neither molecule is changed.
+	 */
+	public PackedMolecule tryToCombineWith(PackedMolecule other) {
+		PackedMolecule result;
+		result = tryCombineImpl(this, other);
+		if(result != null) return result;
+		result = tryCombineImpl(other, this);
+		if(result != null) return result;
+		result = tryCombineImpl(this.duplicate().flip(), other);
+		if(result != null) return result;
+		return tryCombineImpl(this, other.duplicate().flip());
+	}
+
+	static private PackedMolecule tryCombineImpl(PackedMolecule left, PackedMolecule right) {
+		int overhang = left.rightOverhang();
+		if(overhang != right.offset) return null;
+		if(overhang > 0) {
+			// strand B of left sticks out, and faces the start of strand A of right
+			int lenA = left.strandA.length;
+			for(int i = 0; i < overhang; i++) {
+				if((left.strandB.code(left.peerOfA(lenA + i)) ^ 3) != right.strandA.code(i)) return null;
+			}
+		} else if(overhang < 0) {
+			// strand A of left sticks out, and faces the five end of strand B of right
+			int lenA = left.strandA.length;
+			for(int i = 0; i < -overhang; i++) {
+				if((left.strandA.code(lenA + overhang + i) ^ 3) != right.strandB.code(right.strandB.length - 1 - i)) return null;
+			}
+		}
+		PackedMolecule result = new PackedMolecule(left.strandA.concat(right.strandA), right.strandB.concat(left.strandB), left.offset);
+		if(left.hasMismatches() || right.hasMismatches()) {
+			int lenA = left.strandA.length;
+			result.mismatches = Arrays.copyOf(left.mismatches, left.mismatches.length + right.mismatches.length);
+			for(int k = 0; k < right.mismatches.length; k++) {
+				result.mismatches[left.mismatches.length + k] = lenA + right.mismatches[k];
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Same contract as DNAMolecule.restrictionCut: cuts at the first usable site, leaves
+	 * the left part in this molecule and returns the right part (or null).
+	 */
+	public PackedMolecule restrictionCut(String sequence) {
+		int len = sequence.length();
+		if(len > pairedEnd() - pairedBegin()) return null;
+		int site = firstSite(sequence);
+		if(site == RestrictionCuts.NO_SITE) return null;
+		return site >= 0 ? tryCutAtA(site, len) : tryCutAtB(~site, len);
+	}
+
+	/*
+	 * The site restrictionCut cuts at (see RestrictionCuts), found through the index if
+	 * there is one which covers the strands.
+	 */
+	private int firstSite(String sequence) {
+		if(index != null) {
+			int[] onA = index.locateIn(strandA, sequence);
+			int[] onB = index.locateIn(strandB, sequence);
+			if(onA != null && onB != null) return RestrictionCuts.firstSite(this, sequence.length(), onA, onB);
+		}
+		return RestrictionCuts.firstSite(this, sequence);
+	}
+
+	/*
+	 * Same contract as DNAMolecule.restrictionDigest.
+	 */
+	public List<PackedMolecule> restrictionDigest(Collection<String> sites) {
+		List<PackedMolecule> fragments = new ArrayList<PackedMolecule>();
+		Iterator<PackedMolecule> digest = new Digest(sites);
+		while(digest.hasNext()) fragments.add(digest.next());
+		return fragments;
+	}
+
+	/*
+	 * Same contract as DNAMolecule.completeDigest.
+	 */
+	public Stream<PackedMolecule> completeDigest(Collection<String> sites) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Digest(sites),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	public Stream<PackedMolecule> completeDigest(String sequence) {
+		return completeDigest(Collections.singleton(sequence));
+	}
+
+	private final class Digest implements Iterator<PackedMolecule> {
+		private final SiteMatcher onA;
+		private final SiteMatcher onB;
+		private final PackedStrand A = strandA, B = strandB;
+		private final int lenB = strandB.length, pairing = offset, end = pairedEnd();
+		private PackedMolecule rest = PackedMolecule.this;
+		// next position of A to scan, and the position in A of the first base of rest.strandA
+		private int column = pairedBegin(), shift = 0;
+		private int stateA, stateB;
+		private boolean done = false;
+
+		Digest(Collection<String> sites) {
+			onA = new SiteMatcher(sites, false);
+			onB = new SiteMatcher(sites, true);
+			stateA = onA.start();
+			stateB = onB.start();
+		}
+
+		public boolean hasNext() {
+			return !done;
+		}
+
+		public PackedMolecule next() {
+			if(done) throw new NoSuchElementException();
+			while(column < end) {
+				int c = column++;
+				stateA = onA.step(stateA, A.code(c));
+				stateB = onB.step(stateB, B.code(lenB - 1 - c + pairing));
+				PackedMolecule right = null;
+				for(int m = onA.firstMatch(stateA); m != -1 && right == null; m = onA.nextMatch(m)) {
+					int len = onA.siteLength(m);
+					right = rest.tryCutAtSite(true, c - shift - len + 1, len);
+				}
+				for(int m = onB.firstMatch(stateB); m != -1 && right == null; m = onB.nextMatch(m)) {
+					right = rest.tryCutAtSite(false, rest.peerOfA(c - shift), onB.siteLength(m));
+				}
+				if(right != null) {
+					PackedMolecule fragment = rest;
+					rest = right;
+					shift = c + 1;
+					return fragment;
+				}
+			}
+			done = true;
+			return rest;
+		}
+	}
+
+	/*
+	 * tryCutAtA or tryCutAtB, for a site which may have lost some of its pairs to an
+	 * earlier cut (so may stick out of the paired region).
+	 */
+	private PackedMolecule tryCutAtSite(boolean onA, int pos, int len) {
+		int first = onA ? pos : peerOfB(pos + len - 1);
+		int last = onA ? pos + len - 1 : peerOfB(pos);
+		if(pos < 0 || first < pairedBegin() || last >= pairedEnd()) return null;
+		return onA ? tryCutAtA(pos, len) : tryCutAtB(pos, len);
+	}
+
+	/*
+	 * Cuts after a site of strand A at [pos, pos + len), and after the base of strand B
+	 * paired with pos. The site is left unpaired, as a sticky end on both parts.
+	 */
+	private PackedMolecule tryCutAtA(int pos, int len) {
+		if(!RestrictionCuts.canCutAtA(this, pos, len)) return null;
+		int lenA = strandA.length, lenB = strandB.length;
+		int posPeer = peerOfA(pos);
+		PackedMolecule newMolecule = new PackedMolecule(strandA.subSequence(pos + len, lenA), strandB.subSequence(0, posPeer + 1), -len);
+		newMolecule.index = index;
+		this.strandA = strandA.subSequence(0, pos + len);
+		this.strandB = strandB.subSequence(posPeer + 1, lenB);
+		splitMismatches(newMolecule, pos + len);
+		return newMolecule;
+	}
+
+	/*
+	 * The same cut for a site of strand B at [pos, pos + len) (3 --> 5).
+	 */
+	private PackedMolecule tryCutAtB(int pos, int len) {
+		if(!RestrictionCuts.canCutAtB(this, pos, len)) return null;
+		int lenA = strandA.length, lenB = strandB.length;
+		int posPeer = peerOfB(pos);
+		PackedMolecule newMolecule = new PackedMolecule(strandA.subSequence(posPeer + 1, lenA), strandB.subSequence(0, pos + len), -len);
+		newMolecule.index = index;
+		this.strandA = strandA.subSequence(0, posPeer + 1);
+		this.strandB = strandB.subSequence(pos + len, lenB);
+		splitMismatches(newMolecule, posPeer + 1);
+		return newMolecule;
+	}
+
+	/*
+	 * Shares the mismatches out once this molecule has been cut, the right part taking
+	 * strand A from a given position on.
+	 */
+	private void splitMismatches(PackedMolecule right, int from) {
+		if(!hasMismatches()) return;
+		right.mismatches = right.mismatchesFrom(mismatches, from);
+		mismatches = mismatchesFrom(mismatches, 0);
+	}
+
+	public int lengthA() {
+		return strandA.length;
+	}
+
+	public int lengthB() {
+		return strandB.length;
+	}
+
+	public int pairingOffset() {
+		return offset;
+	}
+
+	public char baseA(int index) {
+		return strandA.charAt(index);
+	}
+
+	public char baseB(int index) {
+		return strandB.charAt(index);
+	}
+
+	/*
+	 * Same drawing as DNAMolecule.toString.
+	 */
+	public String toString() {
+		return Drawing.toString(this, mismatches);
+	}
+
+	/*
+	 * Same contract as DNAMolecule.render.
+	 */
+	public void render(Appendable out) throws IOException {
+		new Drawing(out).molecule(this, mismatches);
+	}
+}
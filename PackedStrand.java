@@ -0,0 +1,267 @@
+package given;
+
+import java.util.Arrays;
+
+public final class PackedStrand implements CharSequence {
+
+	// Bases are stored as 2-bit codes, 32 to a word, lowest bits first:
+	// A = 0, C = 1, G = 2, T = 3, so the complement of a code is always (code ^ 3).
+	static final int BASES_PER_WORD = 32;
+	private static final String BASES = "ACGT";
+
+	final long[] words;
+	final int start;
+	final int length;
+	// Set if the words belong to a StrandArena, whose reset hands them out again (see
+	// detached).
+	final boolean inArena;
+
+	/*
+	 * Constructs a new packed strand from a given sequence (in the three to five ordering)
+	 */
+	public PackedStrand(CharSequence sequence) {
+		if(sequence.length() == 0) throw new IllegalArgumentException();
+		length = sequence.length();
+		start = 0;
+		inArena = false;
+		words = new long[wordsFor(length)];
+		for(int i = 0; i < length; i++) {
+			words[i >>> 5] |= (long) code(sequence.charAt(i)) << ((i & 31) << 1);
+		}
+	}
+
+	/*
+	 * Packs an existing strand, walking it from the three end to the five end.
+	 */
+	public PackedStrand(DNAStrand strand) {
+		inArena = false;
+		if(strand.pending != null) {
+			PackedStrand pending = strand.pending.detached();
+			words = pending.words;
+			start = pending.start;
+			length = pending.length;
+			return;
+		}
+		int n = strand.threeEnd.getSize();
+		length = n;
+		start = 0;
+		words = new long[wordsFor(n)];
+		Nucleotide now = strand.threeEnd;
+		for(int i = 0; i < n; i++) {
+			words[i >>> 5] |= (long) code(now.getBase()) << ((i & 31) << 1);
+			now = now.getNext();
+		}
+	}
+
+	PackedStrand(long[] words, int start, int length) {
+		this(words, start, length, false);
+	}
+
+	PackedStrand(long[] words, int start, int length, boolean inArena) {
+		this.words = words;
+		this.start = start;
+		this.length = length;
+		this.inArena = inArena;
+	}
+
+	static int wordsFor(int length) {
+		return (length + BASES_PER_WORD - 1) >>> 5;
+	}
+
+	static int code(char base) {
+		switch(base) {
+		case 'A': return 0;
+		case 'C': return 1;
+		case 'G': return 2;
+		case 'T': return 3;
+		default: throw new IllegalArgumentException("unknown base");
+		}
+	}
+
+	static char base(int code) {
+		return BASES.charAt(code);
+	}
+
+	/*
+	 * Returns the 2-bit code of the base at a given position (no bounds checking).
+	 */
+	int code(int index) {
+		int i = start + index;
+		return (int) (words[i >>> 5] >>> ((i & 31) << 1)) & 3;
+	}
+
+	/*
+	 * Returns bases [32 * k, 32 * k + 32) as one word laid out like a word of a fresh strand
+	 * (lowest bits first), with any bits past the end of the strand cleared.
+	 */
+	long word(int k) {
+		int i = start + (k << 5);
+		int w = i >>> 5, shift = (i & 31) << 1;
+		long word = words[w] >>> shift;
+		if(shift != 0 && w + 1 < words.length) word |= words[w + 1] << (64 - shift);
+		int remaining = length - (k << 5);
+		if(remaining < BASES_PER_WORD) word &= (1L << (remaining << 1)) - 1;
+		return word;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+		return base(code(index));
+	}
+
+	/*
+	 * Returns a view of part of this strand. No bases are copied: the view shares
+	 * the words of this strand, which is safe because packed strands never change.
+	 */
+	public PackedStrand subSequence(int from, int to) {
+		if(from < 0 || to > length || from > to) throw new IndexOutOfBoundsException();
+		return new PackedStrand(words, start + from, to - from, inArena);
+	}
+
+	/*
+	 * This strand, or a copy of it with words of its own if it is in a StrandArena: what
+	 * anything meant to outlive a reset of the arena keeps.
+	 */
+	PackedStrand detached() {
+		if(!inArena) return this;
+		long[] copy = new long[wordsFor(length)];
+		for(int k = 0; k < copy.length; k++) copy[k] = word(k);
+		return new PackedStrand(copy, 0, length);
+	}
+
+	/*
+	 * Returns a new strand made of this strand followed (at its five end) by another.
+	 */
+	public PackedStrand concat(PackedStrand other) {
+		long[] result = new long[wordsFor(length + other.length)];
+		copyCodes(this, result, 0);
+		copyCodes(other, result, length);
+		return new PackedStrand(result, 0, length + other.length);
+	}
+
+	/*
+	 * Returns this strand read backwards (five to three), without complementing it.
+	 */
+	public PackedStrand reverse() {
+		long[] result = new long[wordsFor(length)];
+		for(int i = 0, j = length - 1; i < length; i++, j--) {
+			result[i >>> 5] |= (long) code(j) << ((i & 31) << 1);
+		}
+		return new PackedStrand(result, 0, length);
+	}
+
+	/*
+	 * Returns the strand that could be fully zipped to this one, in 3 --> 5 order
+	 * (the packed equivalent of DNAStrand.getComplementStrand).
+	 */
+	public PackedStrand reverseComplement() {
+		long[] result = new long[wordsFor(length)];
+		reverseComplement(result, 0);
+		return new PackedStrand(result, 0, length);
+	}
+
+	/*
+	 * Writes the reverse complement of this strand to words [at, at + wordsFor(length)) of
+	 * target (overwriting them), a whole word at a time: the 32 codes of a word are
+	 * reversed with Long.reverse and complemented with ~. Bits past the end of the strand
+	 * are left clear.
+	 */
+	void reverseComplement(long[] target, int at) {
+		int words = wordsFor(length);
+		// the last word of this strand is only partly used, so the reversed words start
+		// with (32 - used) bases of padding, shifted out below
+		int pad = (words << 5) - length, shift = pad << 1;
+		long next = reverseComplement(word(words - 1));
+		for(int i = 0; i < words; i++) {
+			long word = next;
+			next = i + 1 < words ? reverseComplement(word(words - 2 - i)) : 0L;
+			target[at + i] = shift == 0 ? word : word >>> shift | next << (64 - shift);
+		}
+	}
+
+	private static long reverseComplement(long word) {
+		word = Long.reverse(word);
+		// Long.reverse also swapped the two bits within each code
+		word = (word >>> 1) & 0x5555555555555555L | (word & 0x5555555555555555L) << 1;
+		return ~word;
+	}
+
+	private static void copyCodes(PackedStrand source, long[] target, int targetPos) {
+		for(int i = 0; i < source.length; i++) {
+			int j = targetPos + i;
+			target[j >>> 5] |= (long) source.code(i) << ((j & 31) << 1);
+		}
+	}
+
+	/*
+	 * Collects bases one at a time (three to five), so that a strand can be built from any
+	 * source without first making a String of it.
+	 */
+	public static final class Builder {
+		private long[] words;
+		private int length = 0;
+
+		public Builder() {
+			this(512);
+		}
+
+		/*
+		 * A builder with room for a given number of bases before it has to grow.
+		 */
+		public Builder(int capacity) {
+			words = new long[Math.max(1, wordsFor(capacity))];
+		}
+
+		public Builder append(char base) {
+			return appendCode(code(base));
+		}
+
+		Builder appendCode(int code) {
+			if(length == Integer.MAX_VALUE) throw new IllegalStateException("strand too long");
+			if((length >>> 5) == words.length) {
+				words = Arrays.copyOf(words, (int) Math.min(2L * words.length, wordsFor(Integer.MAX_VALUE)));
+			}
+			words[length >>> 5] |= (long) code << ((length & 31) << 1);
+			length++;
+			return this;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		public PackedStrand build() {
+			if(length == 0) throw new IllegalArgumentException();
+			return new PackedStrand(Arrays.copyOf(words, wordsFor(length)), 0, length);
+		}
+	}
+
+	/*
+	 * Expands this strand back into a linked strand of Nucleotides.
+	 */
+	public DNAStrand toStrand() {
+		Nucleotide threeEnd = new Nucleotide(base(code(0)));
+		Nucleotide fiveEnd = threeEnd;
+		for(int i = 1; i < length; i++) {
+			Nucleotide now = new Nucleotide(base(code(i)));
+			fiveEnd.append(now);
+			fiveEnd = now;
+		}
+		return new DNAStrand(threeEnd, fiveEnd);
+	}
+
+	/*
+	 * Returns the plain sequence (three to five), as required of a CharSequence.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder(length);
+		for(int i = 0; i < length; i++) {
+			sb.append(base(code(i)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,107 @@
+package given;
+
+/*
+ * Where restrictionCut cuts a molecule (see DNAMolecule.restrictionCut), worked out from
+ * its bases alone. The molecule then splits its strands at the site it is given.
+ *
+ * A site is given as its first position on strand A, or as the complement (~) of its first
+ * position on strand B, both 3 --> 5.
+ */
+final class RestrictionCuts {
+
+	static final int NO_SITE = Integer.MIN_VALUE;
+
+	private RestrictionCuts() {
+	}
+
+	// Bounds of the paired region, as positions in strand A.
+	static int pairedBegin(MoleculeBases m) {
+		return Math.max(0, m.pairingOffset());
+	}
+
+	static int pairedEnd(MoleculeBases m) {
+		return Math.min(m.lengthA(), m.lengthB() + m.pairingOffset());
+	}
+
+	// Position in strand B of the base paired with position i of strand A, and back.
+	static int peer(MoleculeBases m, int i) {
+		return m.lengthB() - 1 - i + m.pairingOffset();
+	}
+
+	/*
+	 * The first usable site of sequence, scanning the paired region from its left end and
+	 * trying strand A before strand B at each step, or NO_SITE.
+	 */
+	static int firstSite(MoleculeBases m, String sequence) {
+		int len = sequence.length();
+		int ABegin = pairedBegin(m);
+		int BBegin = peer(m, pairedEnd(m) - 1);
+		int interval = pairedEnd(m) - ABegin;
+		for(int i = 0; i <= interval - len; i++) {
+			if(matchesA(m, ABegin + i, sequence) && canCutAtA(m, ABegin + i, len)) return ABegin + i;
+			if(matchesB(m, BBegin + i, sequence) && canCutAtB(m, BBegin + i, len)) return ~(BBegin + i);
+		}
+		return NO_SITE;
+	}
+
+	/*
+	 * The same with the occurrences of the sequence already found (sorted positions, 3 -->
+	 * 5, on either strand), tried in the same order.
+	 */
+	static int firstSite(MoleculeBases m, int len, int[] onA, int[] onB) {
+		int ABegin = pairedBegin(m);
+		int BBegin = peer(m, pairedEnd(m) - 1);
+		int interval = pairedEnd(m) - ABegin;
+		int a = 0, b = 0;
+		while(a < onA.length && onA[a] < ABegin) a++;
+		while(b < onB.length && onB[b] < BBegin) b++;
+		while(true) {
+			int iA = a < onA.length ? onA[a] - ABegin : Integer.MAX_VALUE;
+			int iB = b < onB.length ? onB[b] - BBegin : Integer.MAX_VALUE;
+			if(Math.min(iA, iB) > interval - len) return NO_SITE;
+			if(iA <= iB) {
+				if(canCutAtA(m, onA[a], len)) return onA[a];
+				a++;
+			} else {
+				if(canCutAtB(m, onB[b], len)) return ~onB[b];
+				b++;
+			}
+		}
+	}
+
+	/*
+	 * Whether a site of strand A at [pos, pos + len) leaves something on both sides of the
+	 * cut, on both strands.
+	 */
+	static boolean canCutAtA(MoleculeBases m, int pos, int len) {
+		if(pos == 0) return false;
+		if(peer(m, pos) == m.lengthB() - 1) return false;
+		if(pos + len == m.lengthA()) return false;
+		return peer(m, pos + len - 1) != 0;
+	}
+
+	/*
+	 * The same for a site of strand B at [pos, pos + len).
+	 */
+	static boolean canCutAtB(MoleculeBases m, int pos, int len) {
+		int posPeer = peer(m, pos);
+		if(pos == 0) return false;
+		if(posPeer == m.lengthA() - 1) return false;
+		if(pos + len == m.lengthB()) return false;
+		return posPeer - len + 1 != 0;
+	}
+
+	private static boolean matchesA(MoleculeBases m, int from, String sequence) {
+		for(int j = 0; j < sequence.length(); j++) {
+			if(m.baseA(from + j) != sequence.charAt(j)) return false;
+		}
+		return true;
+	}
+
+	private static boolean matchesB(MoleculeBases m, int from, String sequence) {
+		for(int j = 0; j < sequence.length(); j++) {
+			if(m.baseB(from + j) != sequence.charAt(j)) return false;
+		}
+		return true;
+	}
+}
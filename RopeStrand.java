@@ -0,0 +1,175 @@
+package given;
+
+/*
+ * An immutable strand kept as a balanced (AVL) tree of packed pieces, for editing long
+ * sequences: base lookup, split and concat all take O(log n), and never copy bases (the
+ * pieces are views of PackedStrands, see subSequence).
+ *
+ * Unlike PackedStrand, a rope may be empty (the result of splitting at either end).
+ *
+ * Every DNAStrand whose bases have been read by position keeps one, which its Nucleotides
+ * split and join as the strand is cut and ligated (see DNAStrand.baseAt).
+ */
+public final class RopeStrand implements CharSequence {
+
+	// Leaves shorter than this are merged when concatenated, so that many small edits
+	// do not leave a tree of single bases behind.
+	static final int MERGE_LENGTH = 256;
+
+	public static final RopeStrand EMPTY = new RopeStrand(null, null, null, 0, 0);
+
+	// set for a leaf
+	private final PackedStrand leaf;
+	// set for an inner node (both of them non-empty)
+	private final RopeStrand left, right;
+	private final int length;
+	// 0 for EMPTY, 1 for a leaf
+	private final int height;
+
+	private RopeStrand(PackedStrand leaf, RopeStrand left, RopeStrand right, int length, int height) {
+		this.leaf = leaf;
+		this.left = left;
+		this.right = right;
+		this.length = length;
+		this.height = height;
+	}
+
+	public RopeStrand(PackedStrand strand) {
+		this(strand, null, null, strand.length(), 1);
+	}
+
+	public RopeStrand(CharSequence sequence) {
+		this(new PackedStrand(sequence));
+	}
+
+	private static RopeStrand node(RopeStrand left, RopeStrand right) {
+		if(left.length > Integer.MAX_VALUE - right.length) throw new IllegalStateException("strand too long");
+		return new RopeStrand(null, left, right, left.length + right.length, Math.max(left.height, right.height) + 1);
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		return PackedStrand.base(code(index));
+	}
+
+	/*
+	 * Same as charAt.
+	 */
+	public char baseAt(int index) {
+		return charAt(index);
+	}
+
+	int code(int index) {
+		if(index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+		RopeStrand now = this;
+		while(now.leaf == null) {
+			if(index < now.left.length) {
+				now = now.left;
+			} else {
+				index -= now.left.length;
+				now = now.right;
+			}
+		}
+		return now.leaf.code(index);
+	}
+
+	/*
+	 * This strand followed (at its five end) by another one.
+	 */
+	public RopeStrand concat(RopeStrand other) {
+		return join(this, other);
+	}
+
+	/*
+	 * Joins two balanced trees into one, in time proportional to the difference of their
+	 * heights.
+	 */
+	private static RopeStrand join(RopeStrand a, RopeStrand b) {
+		if(a.length == 0) return b;
+		if(b.length == 0) return a;
+		if(a.leaf != null && b.leaf != null && a.length + b.length <= MERGE_LENGTH) {
+			return new RopeStrand(a.leaf.concat(b.leaf));
+		}
+		if(a.height > b.height + 1) {
+			return balance(a.left, join(a.right, b));
+		}
+		if(b.height > a.height + 1) {
+			return balance(join(a, b.left), b.right);
+		}
+		return node(a, b);
+	}
+
+	/*
+	 * node(left, right), rotated back into balance if their heights differ by two.
+	 */
+	private static RopeStrand balance(RopeStrand left, RopeStrand right) {
+		if(left.height > right.height + 1) {
+			if(left.left.height >= left.right.height) {
+				return node(left.left, node(left.right, right));
+			}
+			return node(node(left.left, left.right.left), node(left.right.right, right));
+		}
+		if(right.height > left.height + 1) {
+			if(right.right.height >= right.left.height) {
+				return node(node(left, right.left), right.right);
+			}
+			return node(node(left, right.left.left), node(right.left.right, right.right));
+		}
+		return node(left, right);
+	}
+
+	/*
+	 * Splits this strand before a given position: returns bases [0, index) and
+	 * [index, length) (either of which may be empty).
+	 */
+	public RopeStrand[] split(int index) {
+		if(index < 0 || index > length) throw new IndexOutOfBoundsException("index " + index);
+		if(index == 0) return new RopeStrand[] { EMPTY, this };
+		if(index == length) return new RopeStrand[] { this, EMPTY };
+		if(leaf != null) {
+			return new RopeStrand[] { new RopeStrand(leaf.subSequence(0, index)),
+					new RopeStrand(leaf.subSequence(index, length)) };
+		}
+		if(index <= left.length) {
+			RopeStrand[] parts = left.split(index);
+			return new RopeStrand[] { parts[0], join(parts[1], right) };
+		}
+		RopeStrand[] parts = right.split(index - left.length);
+		return new RopeStrand[] { join(left, parts[0]), parts[1] };
+	}
+
+	public RopeStrand subSequence(int from, int to) {
+		if(from < 0 || to > length || from > to) throw new IndexOutOfBoundsException();
+		return split(to)[0].split(from)[1];
+	}
+
+	/*
+	 * Copies this strand into a single PackedStrand (which must not be empty).
+	 */
+	public PackedStrand toPacked() {
+		if(leaf != null) return leaf;
+		PackedStrand.Builder builder = new PackedStrand.Builder(length);
+		appendTo(builder);
+		return builder.build();
+	}
+
+	private void appendTo(PackedStrand.Builder builder) {
+		if(leaf != null) {
+			for(int i = 0; i < leaf.length(); i++) builder.appendCode(leaf.code(i));
+		} else if(length > 0) {
+			left.appendTo(builder);
+			right.appendTo(builder);
+		}
+	}
+
+	/*
+	 * Returns the plain sequence (three to five), as required of a CharSequence.
+	 */
+	public String toString() {
+		if(length == 0) return "";
+		return toPacked().toString();
+	}
+}
@@ -0,0 +1,216 @@
+package given;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Loads sequences from FASTA and UCSC .2bit files straight into packed strands. Files are
+ * memory mapped a window at a time (so they may be larger than 2 GB), and bases go from
+ * the mapped bytes into the strand without any intermediate String.
+ *
+ * Strands cannot hold anything but A, C, G and T: lower case (soft masked) bases are read
+ * as upper case, and a record with runs of N (unknown bases, as in the gaps of every
+ * assembly) is split at them. Each piece is then keyed "name:from-to", for its bases
+ * [from, to) of the record counted from 0, and a record of nothing but N gives no strand.
+ * Any other base is an IllegalArgumentException.
+ */
+public final class SequenceLoader {
+
+	// Size of each mapped window. Must stay below 2 GB, the limit of a single mapping.
+	private static final long WINDOW = 1L << 30;
+
+	private static final int TWO_BIT_SIGNATURE = 0x1A412743;
+	// .2bit codes are T = 0, C = 1, A = 2, G = 3; these are the matching PackedStrand codes
+	private static final int[] TWO_BIT_CODES = { 3, 1, 0, 2 };
+
+	private SequenceLoader() {}
+
+	/*
+	 * Reads every record of a FASTA file, keyed by the first word of its header line
+	 * (in file order).
+	 */
+	public static Map<String, PackedStrand> readFasta(Path file) throws IOException {
+		Map<String, PackedStrand> records = new LinkedHashMap<String, PackedStrand>();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			StringBuilder header = null;
+			Record record = null;
+			boolean lineStart = true;
+			for(long windowStart = 0; windowStart < size; windowStart += WINDOW) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW, size - windowStart));
+				while(window.hasRemaining()) {
+					char c = (char) (window.get() & 0xff);
+					if(header != null) {
+						// inside a header line: only the name (first word) is kept
+						if(c == '\n') {
+							record = new Record(header.toString().trim().split("\\s+", 2)[0]);
+							header = null;
+							lineStart = true;
+						} else {
+							header.append(c);
+						}
+						continue;
+					}
+					if(c == '>' && lineStart) {
+						if(record != null) record.addTo(records);
+						header = new StringBuilder();
+						continue;
+					}
+					lineStart = c == '\n';
+					if(c == '\n' || c == '\r' || c == ' ' || c == '\t') continue;
+					if(record == null) throw new IllegalArgumentException("sequence before the first FASTA header");
+					c = Character.toUpperCase(c);
+					if(c == 'N') {
+						record.appendN();
+					} else {
+						record.appendCode(PackedStrand.code(c));
+					}
+				}
+			}
+			if(header != null) record = new Record(header.toString().trim().split("\\s+", 2)[0]);
+			if(record != null) record.addTo(records);
+		}
+		return records;
+	}
+
+	/*
+	 * Reads every sequence of a .2bit file (versions 0 and 1, either byte order), keyed by
+	 * name (in file order). The packed bases are translated a byte at a time; records are
+	 * split at their N blocks (see above) and mask blocks are ignored.
+	 */
+	public static Map<String, PackedStrand> readTwoBit(Path file) throws IOException {
+		Map<String, PackedStrand> records = new LinkedHashMap<String, PackedStrand>();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, channel.size()));
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getInt(0) != TWO_BIT_SIGNATURE) {
+				header.order(ByteOrder.BIG_ENDIAN);
+				if(header.getInt(0) != TWO_BIT_SIGNATURE) throw new IllegalArgumentException("not a .2bit file");
+			}
+			ByteOrder order = header.order();
+			int version = header.getInt(4);
+			if(version != 0 && version != 1) throw new IllegalArgumentException("unsupported .2bit version " + version);
+			int count = header.getInt(8);
+			header.position(16);
+			for(int i = 0; i < count; i++) {
+				byte[] name = new byte[header.get() & 0xff];
+				header.get(name);
+				long offset = version == 0 ? header.getInt() & 0xffffffffL : header.getLong();
+				readTwoBitRecord(channel, order, offset, new String(name, StandardCharsets.US_ASCII)).addTo(records);
+			}
+		}
+		return records;
+	}
+
+	private static Record readTwoBitRecord(FileChannel channel, ByteOrder order, long offset, String name) throws IOException {
+		MappedByteBuffer counts = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8);
+		counts.order(order);
+		long dnaSize = counts.getInt() & 0xffffffffL;
+		if(dnaSize == 0 || dnaSize > Integer.MAX_VALUE) throw new IllegalArgumentException("unsupported .2bit sequence length " + dnaSize);
+		int nBlocks = counts.getInt();
+		if(nBlocks < 0 || nBlocks > dnaSize) throw new IllegalArgumentException("bad .2bit N block count " + nBlocks);
+		// the starts of the N blocks, then their sizes, then the number of mask blocks
+		MappedByteBuffer blocks = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8, 8L * nBlocks + 4);
+		blocks.order(order);
+		int[] nStarts = new int[nBlocks], nEnds = new int[nBlocks];
+		for(int k = 0; k < nBlocks; k++) nStarts[k] = blocks.getInt();
+		for(int k = 0; k < nBlocks; k++) {
+			long end = (nStarts[k] & 0xffffffffL) + (blocks.getInt() & 0xffffffffL);
+			if(end > dnaSize || (k > 0 && nStarts[k] < nEnds[k - 1])) throw new IllegalArgumentException("bad .2bit N block " + k);
+			nEnds[k] = (int) end;
+		}
+		int maskBlocks = blocks.getInt();
+		long packedStart = offset + 4L * (4 + 2L * nBlocks + 2L * maskBlocks);
+		int length = (int) dnaSize;
+		Record record = new Record(name);
+		long packedSize = (dnaSize + 3) / 4;
+		// bases [next, nStarts[k]) are known, [nStarts[k], nEnds[k]) are N
+		int next = 0, k = 0;
+		for(long windowStart = 0; windowStart < packedSize; windowStart += WINDOW) {
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, packedStart + windowStart, Math.min(WINDOW, packedSize - windowStart));
+			while(window.hasRemaining()) {
+				int b = window.get() & 0xff;
+				// the first base is in the highest two bits
+				for(int shift = 6; shift >= 0 && next < length; shift -= 2, next++) {
+					while(k < nBlocks && next >= nEnds[k]) k++;
+					if(k < nBlocks && next >= nStarts[k]) {
+						record.appendN();
+					} else {
+						// the piece runs up to the next N block
+						record.appendCode(TWO_BIT_CODES[(b >>> shift) & 3], (k < nBlocks ? nStarts[k] : length) - next);
+					}
+				}
+			}
+		}
+		return record;
+	}
+
+	/*
+	 * The pieces of one record between its runs of N, as they are read.
+	 */
+	private static final class Record {
+		private final String name;
+		private final List<PackedStrand> pieces = new ArrayList<PackedStrand>();
+		private final List<Long> starts = new ArrayList<Long>();
+		// bases read so far, N included
+		private long length = 0;
+		private PackedStrand.Builder bases = null;
+
+		Record(String name) {
+			this.name = name;
+		}
+
+		void appendCode(int code) {
+			appendCode(code, 0);
+		}
+
+		/*
+		 * pieceLength is the length of the piece, if known (0 otherwise), which sizes its
+		 * builder when this base starts it.
+		 */
+		void appendCode(int code, int pieceLength) {
+			if(bases == null) {
+				bases = pieceLength > 0 ? new PackedStrand.Builder(pieceLength) : new PackedStrand.Builder();
+				starts.add(length);
+			}
+			bases.appendCode(code);
+			length++;
+		}
+
+		void appendN() {
+			endPiece();
+			length++;
+		}
+
+		private void endPiece() {
+			if(bases == null) return;
+			pieces.add(bases.build());
+			bases = null;
+		}
+
+		/*
+		 * Puts the record under its name if it has no N, or else each of its pieces.
+		 */
+		void addTo(Map<String, PackedStrand> records) {
+			endPiece();
+			if(length == 0) throw new IllegalArgumentException("empty record " + name);
+			if(pieces.size() == 1 && pieces.get(0).length() == length) {
+				records.put(name, pieces.get(0));
+				return;
+			}
+			for(int k = 0; k < pieces.size(); k++) {
+				long from = starts.get(k);
+				records.put(name + ":" + from + "-" + (from + pieces.get(k).length()), pieces.get(k));
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package given;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/*
+ * Aho-Corasick automaton over a set of recognition sequences, so that all of them can be
+ * found in one pass over a strand. Transitions are complete (one per base for every
+ * state), so each step is a single array lookup.
+ */
+final class SiteMatcher {
+
+	private final int[] next;
+	// length of the longest site ending at each state (0 if none)
+	private final int[] siteLength;
+	// next state down the suffix chain at which a site ends (-1 if none)
+	private final int[] outputLink;
+
+	/*
+	 * Builds the automaton; with reversed set, every site is matched read backwards.
+	 */
+	SiteMatcher(Collection<String> sites, boolean reversed) {
+		int maxStates = 1;
+		for(String site : sites) {
+			if(site.length() == 0) throw new IllegalArgumentException("empty recognition sequence");
+			maxStates += site.length();
+		}
+		next = new int[4 * maxStates];
+		siteLength = new int[maxStates];
+		outputLink = new int[maxStates];
+		Arrays.fill(next, -1);
+		int states = 1;
+		for(String site : sites) {
+			int state = 0;
+			for(int i = 0; i < site.length(); i++) {
+				char base = site.charAt(reversed ? site.length() - 1 - i : i);
+				int edge = 4 * state + PackedStrand.code(base);
+				if(next[edge] == -1) next[edge] = states++;
+				state = next[edge];
+			}
+			siteLength[state] = site.length();
+		}
+		// breadth first, so that the failure state of each state is finished before it
+		int[] fail = new int[states];
+		int[] queue = new int[states];
+		int head = 0, tail = 0;
+		outputLink[0] = -1;
+		for(int c = 0; c < 4; c++) {
+			if(next[c] == -1) {
+				next[c] = 0;
+			} else {
+				fail[next[c]] = 0;
+				outputLink[next[c]] = -1;
+				queue[tail++] = next[c];
+			}
+		}
+		while(head < tail) {
+			int state = queue[head++];
+			for(int c = 0; c < 4; c++) {
+				int edge = 4 * state + c;
+				int target = next[edge];
+				if(target == -1) {
+					next[edge] = next[4 * fail[state] + c];
+				} else {
+					int f = next[4 * fail[state] + c];
+					fail[target] = f;
+					outputLink[target] = siteLength[f] > 0 ? f : outputLink[f];
+					queue[tail++] = target;
+				}
+			}
+		}
+	}
+
+	int start() {
+		return 0;
+	}
+
+	int step(int state, char base) {
+		return next[4 * state + PackedStrand.code(base)];
+	}
+
+	int step(int state, int code) {
+		return next[4 * state + code];
+	}
+
+	/*
+	 * The sites ending at a state are found by following firstMatch and then nextMatch
+	 * until -1, from the longest site to the shortest; siteLength gives their lengths.
+	 */
+	int firstMatch(int state) {
+		return siteLength[state] > 0 ? state : outputLink[state];
+	}
+
+	int nextMatch(int match) {
+		return outputLink[match];
+	}
+
+	int siteLength(int match) {
+		return siteLength[match];
+	}
+}
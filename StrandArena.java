@@ -0,0 +1,127 @@
+package given;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Allocates packed strands from large shared slabs, so that building many strands costs a
+ * few big arrays instead of objects per base (or even per strand's words). Everything
+ * carved from an arena is given back at once, by reset (which keeps the slabs for reuse)
+ * or release (which lets them be collected).
+ *
+ * Java cannot place objects in a slab, so the arena hands out PackedStrands (each one an
+ * index range of a slab, as in subSequence) and molecules whose Nucleotides are only built
+ * if they are changed (see DNAMolecule.duplicate). Strands and molecules from an arena, and
+ * the pieces cut from them, must not be used after it is reset or released: their bases
+ * would be those of whatever was allocated next. Whatever is made from them to be kept
+ * (a duplicate, a pack, built Nucleotides) copies its bases out of the arena first.
+ *
+ * Nothing is given back strand by strand, as strands are discarded: only the whole arena
+ * is, and only when reset or release is called.
+ */
+public final class StrandArena {
+
+	// Words in each slab (32M bases). Strands longer than that get an array of their own.
+	static final int SLAB_WORDS = 1 << 20;
+
+	private final List<long[]> slabs = new ArrayList<long[]>();
+	private final List<long[]> large = new ArrayList<long[]>();
+	// the slab being filled (an index into slabs), and its first free word
+	private int slab = -1;
+	private int used = SLAB_WORDS;
+	// where the words of the last allocation start
+	private int allocated;
+
+	/*
+	 * Room for the words of a strand of the given length, starting at word allocated of
+	 * the result. Every word is written in full, so slabs never need clearing.
+	 */
+	private long[] allocate(int length) {
+		int words = PackedStrand.wordsFor(length);
+		if(words > SLAB_WORDS) {
+			long[] own = new long[words];
+			large.add(own);
+			allocated = 0;
+			return own;
+		}
+		if(used + words > SLAB_WORDS) {
+			slab++;
+			if(slab == slabs.size()) slabs.add(new long[SLAB_WORDS]);
+			used = 0;
+		}
+		allocated = used;
+		used += words;
+		return slabs.get(slab);
+	}
+
+	/*
+	 * Packs a sequence (three to five) into the arena.
+	 */
+	public PackedStrand strand(CharSequence sequence) {
+		int length = sequence.length();
+		if(length == 0) throw new IllegalArgumentException();
+		long[] words = allocate(length);
+		for(int k = allocated, i = 0; i < length; k++) {
+			long word = 0;
+			for(int shift = 0; shift < 64 && i < length; shift += 2, i++) {
+				word |= (long) PackedStrand.code(sequence.charAt(i)) << shift;
+			}
+			words[k] = word;
+		}
+		return new PackedStrand(words, allocated << 5, length, true);
+	}
+
+	/*
+	 * The strand which fully zips to the given one, in the arena (see
+	 * PackedStrand.reverseComplement).
+	 */
+	public PackedStrand reverseComplement(PackedStrand strand) {
+		int length = strand.length();
+		long[] words = allocate(length);
+		strand.reverseComplement(words, allocated);
+		return new PackedStrand(words, allocated << 5, length, true);
+	}
+
+	/*
+	 * The same molecule as new PackedMolecule(sequence), with both strands in the arena.
+	 */
+	public PackedMolecule packedMolecule(String sequence) {
+		PackedStrand strandA = strand(sequence);
+		return new PackedMolecule(strandA, reverseComplement(strandA), 0);
+	}
+
+	/*
+	 * The same molecule as new DNAMolecule(sequence), with both strands in the arena:
+	 * its Nucleotides are only built (outside the arena) if it is changed.
+	 */
+	public DNAMolecule molecule(String sequence) {
+		PackedStrand strandA = strand(sequence);
+		return DNAMolecule.lazy(strandA, reverseComplement(strandA), 0);
+	}
+
+	/*
+	 * Gives back everything allocated so far, keeping the slabs to allocate from again.
+	 */
+	public void reset() {
+		large.clear();
+		slab = -1;
+		used = SLAB_WORDS;
+	}
+
+	/*
+	 * Gives back everything allocated so far, and the slabs too.
+	 */
+	public void release() {
+		slabs.clear();
+		reset();
+	}
+
+	/*
+	 * Words of memory held by the arena.
+	 */
+	public long capacity() {
+		long words = (long) slabs.size() * SLAB_WORDS;
+		for(long[] own : large) words += own.length;
+		return words;
+	}
+}
@@ -0,0 +1,114 @@
+package given;
+
+/*
+ * Scores every zipUp offset at once, in O((n + m) log(n + m)).
+ *
+ * Each base is mapped to a power of i, so that a facing pair contributes exactly 1 to the
+ * real part of their product when the two bases are complementary, and 0 or -1 otherwise:
+ *
+ *   strand A (3 --> 5):  A = 1,  C = i,  G = -1, T = -i
+ *   strand B (5 --> 3):  T = 1,  G = -i, C = -1, A = i
+ *
+ * The cross-correlation of the two strands (computed with an FFT) therefore has a real
+ * part equal to the length of the overlap exactly at the offsets where the whole overlap
+ * is complementary.
+ */
+final class ZipCorrelation {
+
+	private ZipCorrelation() {}
+
+	/*
+	 * Same contract (and same choice of offset) as DNAMolecule.findZipOffset.
+	 */
+	static int findZipOffset(CharSequence strA, CharSequence strB) {
+		int lenA = strA.length(), lenB = strB.length();
+		int size = 1;
+		while(size < lenA + lenB - 1) size <<= 1;
+		double[] aRe = new double[size], aIm = new double[size];
+		double[] bRe = new double[size], bIm = new double[size];
+		for(int i = 0; i < lenA; i++) {
+			setUnit(aRe, aIm, i, PackedStrand.code(strA.charAt(i)));
+		}
+		// strand B goes in reversed, which turns the convolution into a correlation
+		for(int i = 0; i < lenB; i++) {
+			setUnit(bRe, bIm, i, PackedStrand.code(strB.charAt(lenB - 1 - i)) + 1);
+		}
+		fft(aRe, aIm, false);
+		fft(bRe, bIm, false);
+		for(int i = 0; i < size; i++) {
+			double re = aRe[i] * bRe[i] - aIm[i] * bIm[i];
+			double im = aRe[i] * bIm[i] + aIm[i] * bRe[i];
+			aRe[i] = re;
+			aIm[i] = im;
+		}
+		fft(aRe, aIm, true);
+		int offsetMin = -(lenB - 1);
+		int offsetMax = lenA - 1;
+		int bestOffset = DNAMolecule.NO_OFFSET;
+		int bestOffsetMatched = 0;
+		for(int i = offsetMin; i <= offsetMax; i++) {
+			int ABegin = i < 0 ? 0 : i;
+			int AEnd = Math.min(lenB + i - 1, lenA - 1);
+			int matched = AEnd - ABegin + 1;
+			if(matched <= bestOffsetMatched) continue;
+			// every mismatch costs at least 1, so rounding errors far below 0.5 are harmless
+			if(aRe[lenB - 1 + i] > matched - 0.5) {
+				bestOffset = i;
+				bestOffsetMatched = matched;
+			}
+		}
+		return bestOffset;
+	}
+
+	private static void setUnit(double[] re, double[] im, int i, int power) {
+		switch(power & 3) {
+		case 0: re[i] = 1; break;
+		case 1: im[i] = 1; break;
+		case 2: re[i] = -1; break;
+		default: im[i] = -1; break;
+		}
+	}
+
+	/*
+	 * In-place iterative radix-2 FFT; the length must be a power of two.
+	 * The inverse transform is scaled by 1 / length.
+	 */
+	static void fft(double[] re, double[] im, boolean inverse) {
+		int n = re.length;
+		for(int i = 1, j = 0; i < n; i++) {
+			int bit = n >>> 1;
+			for(; (j & bit) != 0; bit >>>= 1) j ^= bit;
+			j ^= bit;
+			if(i < j) {
+				double t = re[i]; re[i] = re[j]; re[j] = t;
+				t = im[i]; im[i] = im[j]; im[j] = t;
+			}
+		}
+		double[] cos = new double[n / 2], sin = new double[n / 2];
+		for(int i = 0; i < n / 2; i++) {
+			double angle = 2 * Math.PI * i / n;
+			cos[i] = Math.cos(angle);
+			sin[i] = inverse ? Math.sin(angle) : -Math.sin(angle);
+		}
+		for(int len = 2; len <= n; len <<= 1) {
+			int half = len >>> 1, step = n / len;
+			for(int i = 0; i < n; i += len) {
+				for(int j = 0, k = 0; j < half; j++, k += step) {
+					int u = i + j, v = u + half;
+					double vr = re[v] * cos[k] - im[v] * sin[k];
+					double vi = re[v] * sin[k] + im[v] * cos[k];
+					re[v] = re[u] - vr;
+					im[v] = im[u] - vi;
+					re[u] += vr;
+					im[u] += vi;
+				}
+			}
+		}
+		if(inverse) {
+			for(int i = 0; i < n; i++) {
+				re[i] /= n;
+				im[i] /= n;
+			}
+		}
+	}
+}